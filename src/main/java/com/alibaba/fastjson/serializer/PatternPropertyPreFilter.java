@@ -70,7 +70,11 @@ public class PatternPropertyPreFilter implements PropertyPreFilter {
     
     /**
      * @since 1.2.9
+     * @deprecated walks the serial context for every property and sees no levels
+     *             when circular reference detection is disabled, use the
+     *             <code>maxDepth</code> parameter of the result instead
      */
+    @Deprecated
     public void setMaxLevel(int maxLevel) {
         this.maxLevel = maxLevel;
     }
@@ -0,0 +1,713 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.struts2.ServletActionContext;
+import org.apache.struts2.fastjson.annotation.JSONRPCMethod;
+import org.apache.struts2.fastjson.utils.InflatingInputStream;
+import org.apache.struts2.fastjson.utils.JSONExecutors;
+import org.apache.struts2.fastjson.utils.JSONOutputUtils;
+import org.apache.struts2.fastjson.utils.JSONSerializerUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.parser.DefaultJSONParser;
+import com.alibaba.fastjson.parser.Feature;
+import com.alibaba.fastjson.parser.JSONLexer;
+import com.alibaba.fastjson.parser.JSONToken;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.parser.deserializer.FieldDeserializer;
+import com.alibaba.fastjson.parser.deserializer.JavaBeanDeserializer;
+import com.alibaba.fastjson.parser.deserializer.ObjectDeserializer;
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.ModelDriven;
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.interceptor.AbstractInterceptor;
+
+/**
+ * Binds JSON request bodies into the action, or into its model when the action
+ * is {@link ModelDriven}. The body is parsed straight from the request stream
+ * into the typed properties of the target, without reading it into a String or
+ * an intermediate map first.
+ * <p/>
+ * Parameters:
+ * <ul>
+ * <li>contentType - comma-delimited content types handled, defaults to <code>application/json</code></li>
+ * <li>root - OGNL expression of the object to bind into, defaults to the model or the action</li>
+ * <li>defaultEncoding - encoding used when the request declares none, defaults to <code>UTF-8</code></li>
+ * <li>errorStatus - status sent for malformed bodies, defaults to 400</li>
+ * <li>excludedPatterns - comma-delimited regular expressions of keys never bound, defaults to
+ * {@link #DEFAULT_EXCLUDED_PATTERNS}</li>
+ * <li>acceptedPatterns - comma-delimited regular expressions a key must match to be bound, defaults to
+ * {@link #DEFAULT_ACCEPTED_PATTERNS}</li>
+ * <li>batchSize - elements per batch when the target is a {@link JSONBatchConsumer}, defaults to 1000</li>
+ * <li>pipeline - whether a batch is consumed while the next one is parsed, defaults to false</li>
+ * <li>maxInflatedSize - maximum size of a <code>gzip</code> or <code>deflate</code> body once inflated, defaults to 32MB</li>
+ * <li>maxInflateRatio - maximum ratio of inflated to compressed bytes, defaults to 100</li>
+ * <li>enableRPC - whether bodies are JSON-RPC 2.0 calls or batches of {@link JSONRPCMethod}
+ * methods of the action, which is then not executed; defaults to false</li>
+ * <li>maxBatchSize - maximum number of calls of a JSON-RPC batch, defaults to 100</li>
+ * <li>rpcTimeout - milliseconds the responses of a JSON-RPC call or batch are waited for, defaults to 30000</li>
+ * <li>excludeProperties, includeProperties, excludeNullProperties - filter JSON-RPC results,
+ * patterns are matched from the result of each call</li>
+ * </ul>
+ * Compressed bodies are inflated while they are parsed, bodies exceeding the
+ * limits are answered with 413 and unknown encodings with 415.
+ * Array bodies sent to a {@link JSONBatchConsumer} are streamed to it in batches.
+ * <p/>
+ * As with the params interceptor, each key of the body is checked before its
+ * value is bound: keys matching an excluded pattern or no accepted pattern are
+ * skipped. Setters declared by XWork and Struts types, such as the ones of
+ * ActionSupport, by interfaces named <code>*Aware</code>, such as SessionAware
+ * or ServletRequestAware, and injected setters are never called, whatever the patterns.
+ * <p/>
+ * With enableRPC the interceptor answers the request itself: the interceptors
+ * after it in the stack and the action method are not invoked. It must therefore
+ * be placed after every interceptor guarding the action, such as authentication
+ * or authorization checks.
+ */
+@SuppressWarnings("serial")
+public class FastJSONInterceptor extends AbstractInterceptor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FastJSONInterceptor.class);
+
+	private static final ClassValue<Type> ELEMENT_TYPES = new ClassValue<Type>() {
+		@Override
+		protected Type computeValue(Class<?> type) {
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				for (Type implemented : current.getGenericInterfaces()) {
+					if (implemented instanceof ParameterizedType
+							&& ((ParameterizedType) implemented).getRawType() == JSONBatchConsumer.class) {
+						Type argument = ((ParameterizedType) implemented).getActualTypeArguments()[0];
+						return argument instanceof TypeVariable ? Object.class : argument;
+					}
+				}
+			}
+			return Object.class;
+		}
+	};
+
+	/**
+	 * Keys the params interceptor refuses as well: the class, the scopes and
+	 * objects of the action context, Struts internals and method prefixes.
+	 */
+	public static final String DEFAULT_EXCLUDED_PATTERNS = "class,"
+			+ "(session|request|response|application|parameters|context|servlet(Request|Response|Context)|_memberAccess),"
+			+ "(dojo|struts)(\\..*)?,(action|method):.*";
+
+	/** word characters, hyphens and CJK ideographs, as allowed in property names */
+	public static final String DEFAULT_ACCEPTED_PATTERNS = "[\\w\\-\\u4e00-\\u9fa5]+";
+
+	private static final ClassValue<Set<Method>> PROTECTED_METHODS = new ClassValue<Set<Method>>() {
+		@Override
+		protected Set<Method> computeValue(Class<?> type) {
+			Set<Class<?>> protectedTypes = new HashSet<Class<?>>();
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				collectProtectedTypes(current, protectedTypes);
+			}
+			Set<Method> methods = new HashSet<Method>();
+			for (Method method : type.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length > 1) {
+					continue;
+				}
+				if (method.isAnnotationPresent(Inject.class) || isDeclaredBy(method, protectedTypes)) {
+					methods.add(method);
+				}
+			}
+			return Collections.unmodifiableSet(methods);
+		}
+	};
+
+	private Set<String> contentTypes = JSONOutputUtils.asSet("application/json");
+	private String root;
+	private String defaultEncoding = "UTF-8";
+	private int errorStatus = HttpServletResponse.SC_BAD_REQUEST;
+	private int batchSize = 1000;
+	private boolean pipeline = false;
+	private long maxInflatedSize = 32L * 1024 * 1024;
+	private int maxInflateRatio = 100;
+	private boolean enableRPC = false;
+	private int maxBatchSize = 100;
+	private long rpcTimeout = 30000;
+	private List<Pattern> excludeProperties;
+	private List<Pattern> includeProperties;
+	private boolean excludeNullProperties = false;
+	private List<Pattern> excludedPatterns = compileKeyPatterns(DEFAULT_EXCLUDED_PATTERNS);
+	private List<Pattern> acceptedPatterns = compileKeyPatterns(DEFAULT_ACCEPTED_PATTERNS);
+
+	@Override
+	public String intercept(ActionInvocation invocation) throws Exception {
+		HttpServletRequest request = ServletActionContext.getRequest();
+		if (request == null || !accept(request.getContentType()) || request.getContentLength() == 0) {
+			return invocation.invoke();
+		}
+		Object target = findTarget(invocation);
+		if (target == null) {
+			LOG.debug("No object to bind the JSON request body into");
+			return invocation.invoke();
+		}
+		InputStream body = request.getInputStream();
+		String contentEncoding = StringUtils.trimToNull(request.getHeader("Content-Encoding"));
+		if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)) {
+			if (!InflatingInputStream.isSupported(contentEncoding)) {
+				LOG.debug("Unsupported Content-Encoding {} of the JSON request body", contentEncoding);
+				return reject(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+			}
+			try {
+				body = InflatingInputStream.open(body, contentEncoding, maxInflatedSize, maxInflateRatio);
+			} catch (IOException e) {
+				LOG.debug("Could not read the compressed JSON request body", e);
+				return reject(errorStatus);
+			}
+		}
+		String encoding = request.getCharacterEncoding();
+		Reader reader = new InputStreamReader(body, encoding != null ? encoding : defaultEncoding);
+		if (enableRPC) {
+			// answers the request, the rest of the stack is not invoked
+			try {
+				executeRPC(root != null ? target : invocation.getAction(), reader);
+			} finally {
+				closeQuietly(reader);
+			}
+			return Action.NONE;
+		}
+		try {
+			DefaultJSONParser parser = JSONSerializerUtils.newParser(reader);
+			boolean parsed = false;
+			try {
+				int token = parser.getLexer().token();
+				if (token == JSONToken.LBRACKET && target instanceof JSONBatchConsumer) {
+					consumeBatches(parser, (JSONBatchConsumer<?>) target);
+				} else if (token != JSONToken.EOF) {
+					bind(parser, target);
+				}
+				parsed = true;
+			} finally {
+				close(parser, parsed);
+			}
+		} catch (JSONException e) {
+			LOG.debug("Could not bind the JSON request body into {}", target.getClass().getName(), e);
+			return reject(isInflateLimitExceeded(e) ? HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE : errorStatus);
+		} finally {
+			closeQuietly(reader);
+		}
+		return invocation.invoke();
+	}
+
+	/**
+	 * Closing a parser fails if the JSON text is not complete, which would
+	 * replace the failure that interrupted it, such as an inflate limit.
+	 *
+	 * @param parser the parser to close
+	 * @param parsed whether the body has been parsed without failure
+	 */
+	private static void close(DefaultJSONParser parser, boolean parsed) {
+		if (parsed) {
+			parser.close();
+		} else {
+			parser.getLexer().close();
+		}
+	}
+
+	private static void closeQuietly(Reader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			LOG.debug(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Sets the properties of the target from the JSON object the parser is at,
+	 * as {@link DefaultJSONParser#parseObject(Object)} does, but checks every key
+	 * before binding its value. Values of refused keys are read and dropped.
+	 */
+	protected void bind(DefaultJSONParser parser, Object target) {
+		JSONLexer lexer = parser.getLexer();
+		if (lexer.token() != JSONToken.LBRACE && lexer.token() != JSONToken.COMMA) {
+			throw new JSONException("syntax error, expect {, actual " + lexer.tokenName());
+		}
+		ParserConfig config = parser.getConfig();
+		ObjectDeserializer deserializer = config.getDeserializer(target.getClass());
+		JavaBeanDeserializer bean = deserializer instanceof JavaBeanDeserializer ? (JavaBeanDeserializer) deserializer : null;
+		Set<Method> protectedMethods = PROTECTED_METHODS.get(target.getClass());
+		for (;;) {
+			String key = lexer.scanSymbol(parser.getSymbolTable());
+			if (key == null) {
+				if (lexer.token() == JSONToken.RBRACE) {
+					lexer.nextToken(JSONToken.COMMA);
+					return;
+				}
+				if (lexer.token() == JSONToken.COMMA && lexer.isEnabled(Feature.AllowArbitraryCommas)) {
+					continue;
+				}
+				throw new JSONException("syntax error, unexpected " + lexer.tokenName());
+			}
+			FieldDeserializer field = bean == null ? null : bean.getFieldDeserializer(key);
+			if (field != null && !isBindable(key, field, protectedMethods)) {
+				LOG.debug("Key {} of the JSON request body is not bound into {}", key, target.getClass().getName());
+				field = null;
+			}
+			if (field == null) {
+				lexer.nextTokenWithColon();
+				parser.parse();
+			} else {
+				ObjectDeserializer valueDeserializer = config.getDeserializer(field.fieldInfo.fieldClass,
+						field.fieldInfo.fieldType);
+				lexer.nextTokenWithColon(valueDeserializer.getFastMatchToken());
+				field.setValue(target, valueDeserializer.deserialze(parser, field.fieldInfo.fieldType, null));
+			}
+			if (lexer.token() == JSONToken.RBRACE) {
+				lexer.nextToken(JSONToken.COMMA);
+				return;
+			}
+		}
+	}
+
+	private boolean isBindable(String key, FieldDeserializer field, Set<Method> protectedMethods) {
+		if (field.fieldInfo.method != null && protectedMethods.contains(field.fieldInfo.method)) {
+			return false;
+		}
+		return isAccepted(key) && (key.equals(field.fieldInfo.name) || isAccepted(field.fieldInfo.name));
+	}
+
+	/**
+	 * @param key a key of the request body
+	 * @return true if it matches no excluded pattern and, if there are any, an accepted one
+	 */
+	protected boolean isAccepted(String key) {
+		for (Pattern pattern : excludedPatterns) {
+			if (pattern.matcher(key).matches()) {
+				return false;
+			}
+		}
+		if (acceptedPatterns.isEmpty()) {
+			return true;
+		}
+		for (Pattern pattern : acceptedPatterns) {
+			if (pattern.matcher(key).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void collectProtectedTypes(Class<?> type, Set<Class<?>> protectedTypes) {
+		String name = type.getName();
+		if ((type.isInterface() && type.getSimpleName().endsWith("Aware")) || name.startsWith("com.opensymphony.xwork2.")
+				|| (name.startsWith("org.apache.struts2.") && !name.startsWith("org.apache.struts2.fastjson."))) {
+			protectedTypes.add(type);
+		}
+		for (Class<?> implemented : type.getInterfaces()) {
+			collectProtectedTypes(implemented, protectedTypes);
+		}
+	}
+
+	private static boolean isDeclaredBy(Method method, Set<Class<?>> types) {
+		for (Class<?> type : types) {
+			try {
+				type.getDeclaredMethod(method.getName(), method.getParameterTypes());
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not declared by this type
+			}
+		}
+		return false;
+	}
+
+	private static List<Pattern> compileKeyPatterns(String commaDelim) {
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		Set<String> expressions = JSONOutputUtils.asSet(commaDelim);
+		if (expressions != null) {
+			for (String expression : expressions) {
+				patterns.add(Pattern.compile(expression, Pattern.CASE_INSENSITIVE));
+			}
+		}
+		return patterns;
+	}
+
+	/**
+	 * Runs a JSON-RPC 2.0 call or batch and writes the responses, the results
+	 * are serialized as they come in order and filtered by the include and
+	 * exclude patterns of the interceptor.
+	 */
+	protected void executeRPC(Object target, Reader reader) throws IOException {
+		Object calls;
+		try {
+			DefaultJSONParser parser = JSONSerializerUtils.newParser(reader);
+			boolean parsed = false;
+			try {
+				calls = parser.parse();
+				parsed = true;
+			} finally {
+				close(parser, parsed);
+			}
+		} catch (JSONException e) {
+			if (isReadError(e)) {
+				// a corrupt or oversized compressed body is not a JSON-RPC parse error
+				LOG.debug("Could not read the JSON-RPC request body", e);
+				reject(isInflateLimitExceeded(e) ? HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE : errorStatus);
+				return;
+			}
+			LOG.debug("Could not parse the JSON-RPC request", e);
+			writeRPC(false, Collections.singletonList(
+					JSONRPCDispatcher.completed(JSONRPCDispatcher.Response.error(null, JSONRPCDispatcher.PARSE_ERROR, "Parse error"))));
+			return;
+		}
+		JSONRPCDispatcher dispatcher = new JSONRPCDispatcher(target, JSONExecutors.getExecutor());
+		if (!(calls instanceof JSONArray)) {
+			Future<JSONRPCDispatcher.Response> response = dispatcher.dispatch(calls);
+			writeRPC(false, response == null ? Collections.<Future<JSONRPCDispatcher.Response>>emptyList()
+					: Collections.singletonList(response));
+			return;
+		}
+		JSONArray batch = (JSONArray) calls;
+		if (batch.isEmpty() || batch.size() > maxBatchSize) {
+			writeRPC(false, Collections.singletonList(JSONRPCDispatcher.completed(
+					JSONRPCDispatcher.Response.error(null, JSONRPCDispatcher.INVALID_REQUEST, "Invalid Request"))));
+			return;
+		}
+		writeRPC(true, dispatcher.dispatch(batch));
+	}
+
+	private void writeRPC(boolean batch, List<Future<JSONRPCDispatcher.Response>> responses) throws IOException {
+		HttpServletResponse response = ServletActionContext.getResponse();
+		if (responses.isEmpty()) {
+			// notifications only
+			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+			return;
+		}
+		response.setCharacterEncoding(defaultEncoding);
+		response.setContentType("application/json;charset=" + defaultEncoding);
+		Writer writer = response.getWriter();
+		// one deadline for all calls of a batch
+		long deadline = rpcTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rpcTimeout) : 0;
+		if (batch) {
+			writer.write('[');
+		}
+		for (int i = 0; i < responses.size(); i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			writeRPC(writer, awaitResponse(responses.get(i), deadline));
+		}
+		if (batch) {
+			writer.write(']');
+		}
+		writer.flush();
+	}
+
+	private void writeRPC(Writer writer, JSONRPCDispatcher.Response response) throws IOException {
+		writer.write("{\"jsonrpc\":\"" + JSONRPCDispatcher.VERSION + "\",");
+		if (response.isError()) {
+			JSONObject error = new JSONObject(2, true);
+			error.put("code", response.getCode());
+			error.put("message", response.getMessage());
+			writer.write("\"error\":");
+			writer.write(error.toJSONString());
+		} else {
+			writer.write("\"result\":");
+			JSONSerializerUtils.serialize(writer, response.getResult(), excludeProperties, includeProperties, false,
+					excludeNullProperties, null);
+		}
+		writer.write(",\"id\":");
+		writer.write(JSON.toJSONString(response.getId()));
+		writer.write('}');
+	}
+
+	private JSONRPCDispatcher.Response awaitResponse(Future<JSONRPCDispatcher.Response> response, long deadline) {
+		Object id = JSONRPCDispatcher.getId(response);
+		try {
+			if (rpcTimeout <= 0) {
+				return response.get();
+			}
+			return response.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			response.cancel(true);
+			LOG.warn("JSON-RPC call {} did not complete within {} ms", id, rpcTimeout);
+			return JSONRPCDispatcher.Response.error(id, JSONRPCDispatcher.TIMEOUT, "Timeout");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOG.warn("JSON-RPC call failed", e.getCause());
+		}
+		return JSONRPCDispatcher.Response.error(id, JSONRPCDispatcher.INTERNAL_ERROR, "Internal error");
+	}
+
+	private String reject(int status) throws IOException {
+		HttpServletResponse response = ServletActionContext.getResponse();
+		if (!response.isCommitted()) {
+			response.sendError(status);
+		}
+		return Action.NONE;
+	}
+
+	private static boolean isReadError(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isInflateLimitExceeded(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+			if (cause instanceof InflatingInputStream.LimitExceededException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the array element by element, so at most two batches are held in
+	 * memory whatever the size of the body.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void consumeBatches(DefaultJSONParser parser, JSONBatchConsumer<?> target) throws Exception {
+		JSONBatchConsumer<Object> consumer = (JSONBatchConsumer<Object>) target;
+		Type type = ELEMENT_TYPES.get(consumer.getClass());
+		JSONReader reader = new JSONReader(parser);
+		Future<?> pending = null;
+		try {
+			reader.startArray();
+			List<Object> batch = new ArrayList<Object>(batchSize);
+			while (reader.hasNext()) {
+				batch.add(reader.readObject(type));
+				if (batch.size() >= batchSize) {
+					pending = deliver(consumer, batch, pending);
+					batch = new ArrayList<Object>(batchSize);
+				}
+			}
+			reader.endArray();
+			if (!batch.isEmpty()) {
+				pending = deliver(consumer, batch, pending);
+			}
+			await(pending);
+			pending = null;
+		} finally {
+			if (pending != null) {
+				pending.cancel(true);
+			}
+		}
+	}
+
+	private Future<?> deliver(final JSONBatchConsumer<Object> consumer, final List<Object> batch, Future<?> pending)
+			throws Exception {
+		if (!pipeline) {
+			consumer.consume(batch);
+			return null;
+		}
+		// one batch is consumed while the next is parsed, batches keep their order
+		await(pending);
+		return JSONExecutors.getExecutor().submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				consumer.consume(batch);
+				return null;
+			}
+		});
+	}
+
+	private static void await(Future<?> pending) throws Exception {
+		if (pending == null) {
+			return;
+		}
+		try {
+			pending.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	protected boolean accept(String contentType) {
+		if (contentType == null || contentTypes == null) {
+			return false;
+		}
+		int parameters = contentType.indexOf(';');
+		String mediaType = (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim();
+		for (String accepted : contentTypes) {
+			if (accepted.equalsIgnoreCase(mediaType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected Object findTarget(ActionInvocation invocation) {
+		if (root != null) {
+			return invocation.getStack().findValue(root);
+		}
+		Object action = invocation.getAction();
+		if (action instanceof ModelDriven) {
+			Object model = ((ModelDriven<?>) action).getModel();
+			if (model != null) {
+				return model;
+			}
+		}
+		return action;
+	}
+
+	/**
+	 * @param commaDelim comma-delimited content types whose bodies are bound
+	 */
+	public void setContentType(String commaDelim) {
+		this.contentTypes = JSONOutputUtils.asSet(commaDelim);
+	}
+
+	public void setRoot(String root) {
+		this.root = root;
+	}
+
+	public void setDefaultEncoding(String defaultEncoding) {
+		this.defaultEncoding = defaultEncoding;
+	}
+
+	public void setErrorStatus(int errorStatus) {
+		this.errorStatus = errorStatus;
+	}
+
+	/**
+	 * @param commaDelim regular expressions of keys never bound, replacing the
+	 *            {@link #DEFAULT_EXCLUDED_PATTERNS defaults}; matched ignoring case
+	 */
+	public void setExcludedPatterns(String commaDelim) {
+		this.excludedPatterns = compileKeyPatterns(commaDelim);
+	}
+
+	/**
+	 * @param commaDelim regular expressions a key must match to be bound, replacing the
+	 *            {@link #DEFAULT_ACCEPTED_PATTERNS defaults}; empty to accept every key
+	 */
+	public void setAcceptedPatterns(String commaDelim) {
+		this.acceptedPatterns = compileKeyPatterns(commaDelim);
+	}
+
+	/**
+	 * @param batchSize elements handed to a {@link JSONBatchConsumer} at once
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * @param pipeline whether batches are consumed on the executor while the next one is parsed
+	 */
+	public void setPipeline(boolean pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * @param maxInflatedSize maximum size of a compressed body once inflated, 0 or less for no limit
+	 */
+	public void setMaxInflatedSize(long maxInflatedSize) {
+		this.maxInflatedSize = maxInflatedSize;
+	}
+
+	/**
+	 * @param maxInflateRatio maximum ratio of inflated to compressed bytes, 0 or less for no limit
+	 */
+	public void setMaxInflateRatio(int maxInflateRatio) {
+		this.maxInflateRatio = maxInflateRatio;
+	}
+
+	/**
+	 * The interceptors after this one and the action method are not invoked for
+	 * JSON-RPC requests, place it after the ones guarding the action.
+	 *
+	 * @param enableRPC whether bodies are JSON-RPC 2.0 calls of {@link JSONRPCMethod} methods instead of values to bind
+	 */
+	public void setEnableRPC(boolean enableRPC) {
+		this.enableRPC = enableRPC;
+	}
+
+	/**
+	 * @param maxBatchSize maximum number of calls of a JSON-RPC batch
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * @param rpcTimeout milliseconds the responses of a JSON-RPC call or batch are waited for,
+	 *            0 or less to wait without limit; calls not done in time get a timeout error
+	 */
+	public void setRpcTimeout(long rpcTimeout) {
+		this.rpcTimeout = rpcTimeout;
+	}
+
+	/**
+	 * @param commaDelim regular expressions of properties excluded from JSON-RPC results
+	 */
+	public void setExcludeProperties(String commaDelim) {
+		this.excludeProperties = JSONOutputUtils.compilePatterns(commaDelim, JSONOutputUtils.REGEXP_PATTERN, false);
+	}
+
+	/**
+	 * @param commaDelim regular expressions of properties included in JSON-RPC results
+	 */
+	public void setIncludeProperties(String commaDelim) {
+		this.includeProperties = JSONOutputUtils.compilePatterns(commaDelim, JSONOutputUtils.REGEXP_PATTERN, true);
+	}
+
+	/**
+	 * @param excludeNullProperties whether null properties are left out of JSON-RPC results
+	 */
+	public void setExcludeNullProperties(boolean excludeNullProperties) {
+		this.excludeNullProperties = excludeNullProperties;
+	}
+
+}
@@ -15,21 +15,28 @@
  */
 package org.apache.struts2.fastjson;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.struts2.fastjson.metrics.JSONResultMetrics.Phase;
+import org.apache.struts2.fastjson.metrics.PayloadProfiler;
+import org.apache.struts2.fastjson.utils.DeferredValues;
+import org.apache.struts2.fastjson.utils.JSONCancellation;
+import org.apache.struts2.fastjson.utils.JSONExecutors;
+import org.apache.struts2.fastjson.utils.JSONOutputLimits;
 import org.apache.struts2.fastjson.utils.JSONSerializerUtils;
 import org.apache.struts2.fastjson.utils.JSONOutputUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.serializer.SerializeFilter;
 import com.opensymphony.xwork2.inject.Inject;
-import com.opensymphony.xwork2.util.WildcardUtil;
 
 /**
  * <!-- START SNIPPET: description --> <p/> This result serializes an action
@@ -59,8 +66,22 @@ public class FastJSONResult extends JSONResultSupport {
     protected List<Pattern> excludeProperties;
     protected boolean ignoreHierarchy = true;
     protected boolean ignoreInterfaces = true;
+    protected boolean excludeFrameworkProperties = true;
     protected boolean excludeNullProperties = false;
     protected String defaultDateFormat = null;
+    protected int parallelThreshold = 0;
+    protected int parallelChunkSize = 2048;
+    protected boolean resolveDeferred = false;
+    protected long deferredTimeout = 30000;
+    protected transient DeferredValues deferred;
+    protected int maxDepth = 0;
+    protected long maxNodes = 0;
+    protected int maxCollectionItems = 0;
+    protected String limitMode = LIMIT_MODE_FAIL;
+    protected int profileRate = 0;
+
+    public static final String LIMIT_MODE_FAIL = "fail";
+    public static final String LIMIT_MODE_TRUNCATE = "truncate";
     
     /**
      * Gets a list of regular expressions of properties to exclude from the JSON
@@ -79,12 +100,9 @@ public class FastJSONResult extends JSONResultSupport {
      * @param commaDelim A comma-delimited list of regular expressions
      */
     public void setExcludeProperties(String commaDelim) {
-        Set<String> excludePatterns = JSONOutputUtils.asSet(commaDelim);
+        List<Pattern> excludePatterns = JSONOutputUtils.compilePatterns(commaDelim, JSONOutputUtils.REGEXP_PATTERN, false);
         if (excludePatterns != null) {
-            this.excludeProperties = new ArrayList<Pattern>(excludePatterns.size());
-            for (String pattern : excludePatterns) {
-                this.excludeProperties.add(Pattern.compile(pattern));
-            }
+            this.excludeProperties = excludePatterns;
         }
     }
 
@@ -95,12 +113,9 @@ public class FastJSONResult extends JSONResultSupport {
      * @param commaDelim A comma-delimited list of wildcard patterns
      */
     public void setExcludeWildcards(String commaDelim) {
-        Set<String> excludePatterns = JSONOutputUtils.asSet(commaDelim);
+        List<Pattern> excludePatterns = JSONOutputUtils.compilePatterns(commaDelim, JSONOutputUtils.WILDCARD_PATTERN, false);
         if (excludePatterns != null) {
-            this.excludeProperties = new ArrayList<Pattern>(excludePatterns.size());
-            for (String pattern : excludePatterns) {
-                this.excludeProperties.add(WildcardUtil.compileWildcardPattern(pattern));
-            }
+            this.excludeProperties = excludePatterns;
         }
     }
 
@@ -118,7 +133,7 @@ public class FastJSONResult extends JSONResultSupport {
      * @param commaDelim A comma-delimited list of regular expressions
      */
     public void setIncludeProperties(String commaDelim) {
-        includeProperties = JSONOutputUtils.processIncludePatterns(JSONOutputUtils.asSet(commaDelim), JSONOutputUtils.REGEXP_PATTERN);
+        includeProperties = JSONOutputUtils.compilePatterns(commaDelim, JSONOutputUtils.REGEXP_PATTERN, true);
     }
 
     /**
@@ -128,27 +143,139 @@ public class FastJSONResult extends JSONResultSupport {
      * @param commaDelim A comma-delimited list of wildcard patterns
      */
     public void setIncludeWildcards(String commaDelim) {
-        includeProperties = JSONOutputUtils.processIncludePatterns(JSONOutputUtils.asSet(commaDelim), JSONOutputUtils.WILDCARD_PATTERN);
+        includeProperties = JSONOutputUtils.compilePatterns(commaDelim, JSONOutputUtils.WILDCARD_PATTERN, true);
     }
 
     protected String createJSONString(HttpServletRequest request, Object rootObject) throws JSONException {
-    	return JSONSerializerUtils.serialize(rootObject, excludeProperties, includeProperties, ignoreHierarchy,
-                                         excludeNullProperties, defaultDateFormat);
+    	return JSONSerializerUtils.serialize(rootObject, buildFilters(rootObject), defaultDateFormat);
+    }
+
+    /**
+     * Resolves the deferred properties of the root object and waits for them
+     * here, so that a heavy result does not hold its bulkhead permit meanwhile.
+     */
+    @Override
+    protected void beforeSerialize(HttpServletRequest request, Object rootObject) {
+    	deferred = null;
+    	if (resolveDeferred) {
+    		DeferredValues values = DeferredValues.resolve(rootObject, withCancellation(buildFilters(rootObject)),
+    				JSONExecutors.getExecutor(), deferredTimeout);
+    		try {
+    			values.awaitAll();
+    		} catch (RuntimeException e) {
+    			values.cancel();
+    			throw e;
+    		}
+    		deferred = values;
+    	}
+    }
+
+    private SerializeFilter[] withCancellation(SerializeFilter[] filters) {
+    	JSONCancellation cancellation = getCancellation();
+    	if (cancellation != null) {
+    		filters = Arrays.copyOf(filters, filters.length + 1);
+    		filters[filters.length - 1] = cancellation.getFilter();
+    	}
+    	return filters;
+    }
+
+    @Override
+    protected void writeJSONString(HttpServletRequest request, Object rootObject, Writer writer) throws IOException {
+    	long start = startTimer();
+    	SerializeFilter[] filters = withCancellation(buildFilters(rootObject));
+    	// resolved by beforeSerialize, unless called on another path
+    	DeferredValues deferred = this.deferred;
+    	this.deferred = null;
+    	if (deferred == null && resolveDeferred) {
+    		deferred = DeferredValues.resolve(rootObject, filters, JSONExecutors.getExecutor(), deferredTimeout);
+    	}
+    	if (deferred != null) {
+    		filters = deferred.addFilters(filters);
+    	}
+    	JSONOutputLimits limits = new JSONOutputLimits(maxDepth, maxNodes, maxCollectionItems,
+    			LIMIT_MODE_TRUNCATE.equalsIgnoreCase(limitMode));
+    	if (limits.isEnabled()) {
+    		rootObject = limits.limitRoot(rootObject);
+    		filters = limits.addFilters(filters);
+    	}
+    	PayloadProfiler.Session profiling = null;
+    	if (PayloadProfiler.sample(profileRate)) {
+    		profiling = PayloadProfiler.start(actionKey);
+    		if (profiling != null) {
+    			writer = profiling.wrap(writer);
+    			filters = profiling.addFilters(filters);
+    		}
+    	}
+    	recordPhase(Phase.BUILD_FILTERS, start);
+    	try {
+    		// limits and profiling keep their state on the request thread, chunks serialized in parallel would share it;
+    		// chunks restart the element indices, which path-based patterns would match against
+    		if (parallelThreshold > 0 && !limits.isEnabled() && profiling == null && isEmpty(includeProperties)
+    				&& isEmpty(excludeProperties) && JSONSerializerUtils.sizeOf(rootObject) >= parallelThreshold) {
+    			JSONSerializerUtils.serializeParallel(writer, rootObject, filters, defaultDateFormat, parallelChunkSize);
+    		} else {
+    			JSONSerializerUtils.serialize(writer, rootObject, filters, defaultDateFormat);
+    		}
+    		if (profiling != null) {
+    			profiling.finish();
+    		}
+    	} finally {
+    		if (deferred != null) {
+    			deferred.cancel();
+    		}
+    	}
+    }
+    
+    private static boolean isEmpty(List<Pattern> patterns) {
+    	return patterns == null || patterns.isEmpty();
+    }
+
+    /**
+     * @param rootObject the object to be serialized
+     * @return the filters of the include and exclude patterns, the hierarchy
+     *         options, the framework properties option and the null properties option
+     */
+    protected SerializeFilter[] buildFilters(Object rootObject) {
+    	return JSONSerializerUtils.buildFilters(rootObject, excludeProperties, includeProperties, ignoreHierarchy,
+    			ignoreInterfaces, excludeFrameworkProperties, excludeNullProperties);
     }
     
+    /**
+     * Serialize only the properties declared by the class of the root object,
+     * leaving out the ones it inherits, enabled by default. Applies to
+     * JavaBean roots, not to maps, collections or arrays.
+     *
+     * @param ignoreHierarchy
+     */
     public void setIgnoreHierarchy(boolean ignoreHierarchy) {
         this.ignoreHierarchy = ignoreHierarchy;
     }
 
     /**
-     * Controls whether interfaces should be inspected for method annotations
-     * You may need to set to this true if your action is a proxy as annotations
-     * on methods are not inherited
+     * With ignoreHierarchy, controls whether the properties declared by the
+     * interfaces of the root class are left out as well, enabled by default.
+     * You may need to set this to false if your action is a proxy, as its
+     * properties are then declared by the interfaces it implements
      */
     public void setIgnoreInterfaces(boolean ignoreInterfaces) {
         this.ignoreInterfaces = ignoreInterfaces;
     }
 
+    /**
+     * Leave out the properties an action root inherits from the XWork base
+     * types, such as actionErrors, fieldErrors, locale or texts, enabled by
+     * default. Set this to false to serialize them.
+     *
+     * @param excludeFrameworkProperties
+     */
+    public void setExcludeFrameworkProperties(boolean excludeFrameworkProperties) {
+        this.excludeFrameworkProperties = excludeFrameworkProperties;
+    }
+
+    public boolean isExcludeFrameworkProperties() {
+        return excludeFrameworkProperties;
+    }
+
     public boolean isIgnoreHierarchy() {
         return ignoreHierarchy;
     }
@@ -166,6 +293,132 @@ public class FastJSONResult extends JSONResultSupport {
         this.excludeNullProperties = excludeNullProperties;
     }
 
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Serialize a root collection or array with at least this many elements on
+     * all cores, 0 (the default) always serializes on the request thread. Not
+     * applied when include or exclude patterns are configured.
+     *
+     * @param parallelThreshold
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelChunkSize() {
+        return parallelChunkSize;
+    }
+
+    /**
+     * Number of elements serialized by one parallel task
+     *
+     * @param parallelChunkSize
+     */
+    public void setParallelChunkSize(int parallelChunkSize) {
+        this.parallelChunkSize = Math.max(1, parallelChunkSize);
+    }
+
+    public boolean isResolveDeferred() {
+        return resolveDeferred;
+    }
+
+    /**
+     * Resolve Future and Supplier values and getters annotated with
+     * {@link org.apache.struts2.fastjson.annotation.Deferred} concurrently, disabled by
+     * default: serialization then waits up to <code>deferredTimeout</code> on each
+     * Future or Supplier value it meets
+     *
+     * @param resolveDeferred
+     */
+    public void setResolveDeferred(boolean resolveDeferred) {
+        this.resolveDeferred = resolveDeferred;
+    }
+
+    public long getDeferredTimeout() {
+        return deferredTimeout;
+    }
+
+    /**
+     * Milliseconds until all deferred properties must be resolved
+     *
+     * @param deferredTimeout
+     */
+    public void setDeferredTimeout(long deferredTimeout) {
+        this.deferredTimeout = deferredTimeout;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Maximum nesting of objects, 0 (the default) for no limit
+     *
+     * @param maxDepth
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Maximum number of properties and collection elements written, 0 (the default) for no limit
+     *
+     * @param maxNodes
+     */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    public int getMaxCollectionItems() {
+        return maxCollectionItems;
+    }
+
+    /**
+     * Maximum elements of a single collection or array, 0 (the default) for no limit
+     *
+     * @param maxCollectionItems
+     */
+    public void setMaxCollectionItems(int maxCollectionItems) {
+        this.maxCollectionItems = maxCollectionItems;
+    }
+
+    public String getLimitMode() {
+        return limitMode;
+    }
+
+    /**
+     * What happens when maxDepth, maxNodes or maxCollectionItems is exceeded:
+     * <code>fail</code> (the default) responds with the limit status,
+     * <code>truncate</code> cuts the output and marks it with <code>"$truncated"</code>.
+     * maxBytes always fails.
+     *
+     * @param limitMode
+     */
+    public void setLimitMode(String limitMode) {
+        this.limitMode = limitMode;
+    }
+
+    public int getProfileRate() {
+        return profileRate;
+    }
+
+    /**
+     * Attribute the characters and time of one in profileRate responses to their
+     * property paths, see {@link PayloadProfiler}. 1 profiles every response, 0 (the default) none
+     *
+     * @param profileRate
+     */
+    public void setProfileRate(int profileRate) {
+        this.profileRate = profileRate;
+    }
+
     public String getDefaultDateFormat() {
         return defaultDateFormat;
     }
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.struts2.StrutsStatics;
+import org.apache.struts2.fastjson.utils.JSONOutputUtils;
+import org.apache.struts2.fastjson.utils.JSONSerializerUtils;
+import org.apache.struts2.fastjson.utils.JSONSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.ActionProxy;
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * <!-- START SNIPPET: description --> <p/> This result serializes the root
+ * object into a JSON file on disk and serves that file, instead of holding the
+ * JSON in memory. The file is only regenerated when its version changes or its
+ * time to live has expired; a gzip compressed copy is kept next to it and single
+ * byte ranges are supported so interrupted downloads can be resumed.
+ * <p/> <!-- END SNIPPET: description --> <p/> <p/> <u>Result
+ * parameters:</u> <p/> <!-- START SNIPPET: parameters --> <p/>
+ * <ul>
+ * <p/>
+ * <li>snapshotName - name of the snapshot files, defaults to the action namespace and name</li>
+ * <li>snapshotDir - directory of the snapshot files, defaults to the constant
+ * <code>struts.fastjson.snapshot.dir</code> or a sub directory of <code>java.io.tmpdir</code></li>
+ * <li>snapshotTtl - seconds after which the snapshot is regenerated, 0 (the default) never expires</li>
+ * <li>snapshotVersion - OGNL expression of the data version, a different value regenerates the snapshot</li>
+ * <p/>
+ * </ul>
+ * <p/> All parameters of {@link FastJSONResult} controlling the serialization apply,
+ * JSONP callbacks and wrappers are not supported. <!-- END SNIPPET: parameters --> <p/> <b>Example:</b> <p/>
+ * <p/>
+ * <pre>
+ * &lt;!-- START SNIPPET: example --&gt;
+ * &lt;result name=&quot;success&quot; type=&quot;fastjsonSnapshot&quot;&gt;
+ *     &lt;param name=&quot;root&quot;&gt;catalog&lt;/param&gt;
+ *     &lt;param name=&quot;snapshotVersion&quot;&gt;catalogVersion&lt;/param&gt;
+ *     &lt;param name=&quot;enableGZIP&quot;&gt;true&lt;/param&gt;
+ * &lt;/result&gt;
+ * &lt;!-- END SNIPPET: example --&gt;
+ * </pre>
+ */
+@SuppressWarnings("serial")
+public class FastJSONSnapshotResult extends FastJSONResult {
+
+	protected static final Logger LOG = LoggerFactory.getLogger(FastJSONSnapshotResult.class);
+
+	protected String snapshotName;
+	protected String snapshotDir;
+	protected String defaultSnapshotDir;
+	protected long snapshotTtl = 0;
+	protected String snapshotVersion;
+
+	@Override
+	public void execute(final ActionInvocation invocation) throws Exception {
+		ActionContext actionContext = invocation.getInvocationContext();
+		final HttpServletRequest request = (HttpServletRequest) actionContext.get(StrutsStatics.HTTP_REQUEST);
+		HttpServletResponse response = (HttpServletResponse) actionContext.get(StrutsStatics.HTTP_RESPONSE);
+		try {
+			JSONSnapshot snapshot = JSONSnapshot.getSnapshot(getSnapshotDirectory(), getSnapshotName(invocation));
+			String version = null;
+			if (snapshotVersion != null) {
+				version = String.valueOf(invocation.getStack().findValue(snapshotVersion));
+			}
+			snapshot.refresh(version, snapshotTtl * 1000L, new JSONSnapshot.Generator() {
+				@Override
+				public void generate(OutputStream out) throws IOException {
+					Object rootObject = findRootObject(invocation);
+					Writer writer = new BufferedWriter(new OutputStreamWriter(out, getEncoding()), 8192);
+					JSONSerializerUtils.serialize(writer, rootObject, buildFilters(rootObject), defaultDateFormat);
+					writer.flush();
+				}
+			});
+			writeSnapshot(request, response, snapshot);
+		} catch (IOException exception) {
+			LOG.error(exception.getMessage(), exception);
+			throw exception;
+		}
+	}
+
+	protected void writeSnapshot(HttpServletRequest request, HttpServletResponse response, JSONSnapshot snapshot)
+			throws IOException {
+		// ranges are only served from the identity file, If-Range is compared with its tag
+		String range = request.getHeader("Range");
+		boolean gzip = range == null && enableGzip(request);
+		JSONSnapshot.Content content = snapshot.open(gzip);
+		try {
+			String ifRange = request.getHeader("If-Range");
+			if (range != null && ifRange != null && !ifRange.equals(content.getETag())) {
+				// the client holds another generation, it gets the whole document
+				range = null;
+				if (enableGzip(request)) {
+					content.close();
+					gzip = true;
+					content = snapshot.open(true);
+				}
+			}
+			// tag, date and size all describe the opened file, a concurrent regeneration only replaces the directory entry
+			String etag = content.getETag();
+			if (enableGZIP) {
+				response.setHeader("Vary", "Accept-Encoding");
+			}
+			response.setHeader("ETag", etag);
+			if (etag.equals(request.getHeader("If-None-Match"))) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+
+			response.setContentType(StringUtils.defaultString(contentType, "application/json") + ";charset=" + getEncoding());
+			response.setHeader("Accept-Ranges", "bytes");
+			response.setDateHeader("Last-Modified", content.getCreated());
+			if (noCache) {
+				response.setHeader("Cache-Control", "no-cache");
+				response.setHeader("Expires", "0");
+				response.setHeader("Pragma", "No-cache");
+			}
+
+			FileChannel channel = content.getChannel();
+			long length = channel.size();
+			long start = 0;
+			long end = length - 1;
+			if (range != null) {
+				long[] bounds = parseRange(range, length);
+				if (bounds == UNSATISFIABLE) {
+					response.setHeader("Content-Range", "bytes */" + length);
+					response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				if (bounds != null) {
+					start = bounds[0];
+					end = bounds[1];
+					response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+					response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+				}
+			}
+			if (gzip) {
+				response.setHeader("Content-Encoding", "gzip");
+			}
+			response.setHeader("Content-Length", String.valueOf(end - start + 1));
+			if (end >= start) {
+				JSONOutputUtils.transferTo(channel, start, end - start + 1, response.getOutputStream());
+			}
+		} finally {
+			content.close();
+		}
+	}
+
+	private static final long[] UNSATISFIABLE = new long[0];
+
+	/**
+	 * Parses a single byte range, see RFC 7233.
+	 *
+	 * @return the first and last byte position, null if the header should be
+	 *         ignored (invalid syntax or multiple ranges) or {@link #UNSATISFIABLE}
+	 */
+	private static long[] parseRange(String range, long length) {
+		if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = range.substring(6).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			long start;
+			long end;
+			if (first.length() == 0) {
+				// suffix range: the last n bytes
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0) {
+					return UNSATISFIABLE;
+				}
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(first);
+				end = last.length() == 0 ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+				if (end < start) {
+					return last.length() == 0 || start >= length ? UNSATISFIABLE : null;
+				}
+			}
+			if (start >= length) {
+				return UNSATISFIABLE;
+			}
+			return new long[] { start, end };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	protected File getSnapshotDirectory() {
+		String directory = snapshotDir != null ? snapshotDir : defaultSnapshotDir;
+		if (directory == null) {
+			return new File(System.getProperty("java.io.tmpdir"), "struts2-fastjson");
+		}
+		return new File(directory);
+	}
+
+	protected String getSnapshotName(ActionInvocation invocation) {
+		if (snapshotName != null) {
+			return snapshotName;
+		}
+		ActionProxy proxy = invocation.getProxy();
+		return StringUtils.defaultString(proxy.getNamespace()) + "/" + proxy.getActionName();
+	}
+
+	public String getSnapshotName() {
+		return snapshotName;
+	}
+
+	/**
+	 * Name of the snapshot files, defaults to the action namespace and name
+	 *
+	 * @param snapshotName
+	 */
+	public void setSnapshotName(String snapshotName) {
+		this.snapshotName = snapshotName;
+	}
+
+	public String getSnapshotDir() {
+		return snapshotDir;
+	}
+
+	/**
+	 * Directory of the snapshot files
+	 *
+	 * @param snapshotDir
+	 */
+	public void setSnapshotDir(String snapshotDir) {
+		this.snapshotDir = snapshotDir;
+	}
+
+	@Inject(required = false, value = "struts.fastjson.snapshot.dir")
+	public void setDefaultSnapshotDir(String defaultSnapshotDir) {
+		this.defaultSnapshotDir = defaultSnapshotDir;
+	}
+
+	public long getSnapshotTtl() {
+		return snapshotTtl;
+	}
+
+	/**
+	 * Seconds after which the snapshot is regenerated, 0 or less never expires
+	 *
+	 * @param snapshotTtl
+	 */
+	public void setSnapshotTtl(long snapshotTtl) {
+		this.snapshotTtl = snapshotTtl;
+	}
+
+	public String getSnapshotVersion() {
+		return snapshotVersion;
+	}
+
+	/**
+	 * OGNL expression of the data version, the snapshot is regenerated when its value changes
+	 *
+	 * @param snapshotVersion
+	 */
+	public void setSnapshotVersion(String snapshotVersion) {
+		this.snapshotVersion = snapshotVersion;
+	}
+
+}
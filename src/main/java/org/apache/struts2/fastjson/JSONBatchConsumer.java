@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.util.List;
+
+/**
+ * Implemented by actions (or their models) receiving large JSON arrays: when
+ * the request body is an array, the {@link FastJSONInterceptor} hands its
+ * elements over in batches while the body is being parsed, instead of binding
+ * the whole list at once. The action is invoked after the last batch.
+ * <p/>
+ * Elements are converted to the type argument of this interface, objects
+ * become {@link com.alibaba.fastjson.JSONObject}s when it cannot be resolved.
+ * The batch size is set by the <code>batchSize</code> parameter of the
+ * interceptor. With <code>pipeline</code> enabled, batches are consumed on the
+ * executor of the plugin while the next one is parsed, so the
+ * <code>ActionContext</code> is not available to {@link #consume(List)}.
+ *
+ * @param <T> type of the elements
+ */
+public interface JSONBatchConsumer<T> {
+
+	/**
+	 * @param batch the next elements of the array, in order, never empty; the
+	 *            list is not reused by the caller
+	 * @throws Exception to abort the request
+	 */
+	void consume(List<T> batch) throws Exception;
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.struts2.fastjson.annotation.JSONRPCMethod;
+import org.apache.struts2.fastjson.utils.JSONSerializerUtils;
+import org.apache.struts2.fastjson.utils.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+
+/**
+ * Runs JSON-RPC 2.0 calls against the {@link JSONRPCMethod} methods of an
+ * action. Calls of a batch are started in order: the ones of concurrent
+ * methods on the executor, the others right away on the calling thread, so
+ * the batch takes about as long as its slowest concurrent call plus its
+ * sequential calls.
+ * <p/>
+ * Parameters are given by position, or as an object when the method takes a
+ * single parameter, and are converted to the declared parameter types.
+ */
+public class JSONRPCDispatcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JSONRPCDispatcher.class);
+
+	public static final String VERSION = "2.0";
+
+	public static final int PARSE_ERROR = -32700;
+	public static final int INVALID_REQUEST = -32600;
+	public static final int METHOD_NOT_FOUND = -32601;
+	public static final int INVALID_PARAMS = -32602;
+	public static final int INTERNAL_ERROR = -32603;
+	/** implementation-defined server error: the call did not complete in time */
+	public static final int TIMEOUT = -32000;
+
+	private static final ClassValue<Map<String, Method>> METHODS = new ClassValue<Map<String, Method>>() {
+		@Override
+		protected Map<String, Method> computeValue(Class<?> type) {
+			Map<String, Method> methods = new HashMap<String, Method>();
+			for (Method method : type.getMethods()) {
+				JSONRPCMethod annotation = method.getAnnotation(JSONRPCMethod.class);
+				if (annotation == null || Modifier.isStatic(method.getModifiers())) {
+					continue;
+				}
+				String name = annotation.name().length() > 0 ? annotation.name() : method.getName();
+				if (methods.containsKey(name)) {
+					LOG.warn("JSON-RPC method {} of {} is declared more than once", name, type.getName());
+				}
+				ReflectionUtils.makeAccessible(method);
+				methods.put(name, method);
+			}
+			return Collections.unmodifiableMap(methods);
+		}
+	};
+
+	private final Object target;
+	private final ExecutorService executor;
+
+	/**
+	 * @param target the object whose annotated methods are called
+	 * @param executor runs the calls of concurrent methods
+	 */
+	public JSONRPCDispatcher(Object target, ExecutorService executor) {
+		this.target = target;
+		this.executor = executor;
+	}
+
+	/**
+	 * Starts the calls of a batch.
+	 *
+	 * @param calls the parsed batch
+	 * @return the responses in order of the calls, without the ones of notifications
+	 */
+	public List<Future<Response>> dispatch(JSONArray calls) {
+		List<Future<Response>> responses = new ArrayList<Future<Response>>(calls.size());
+		for (Object call : calls) {
+			Future<Response> response = dispatch(call);
+			if (response != null) {
+				responses.add(response);
+			}
+		}
+		return responses;
+	}
+
+	/**
+	 * Starts a single call.
+	 *
+	 * @param call the parsed call
+	 * @return its response, null for a notification
+	 */
+	public Future<Response> dispatch(Object call) {
+		if (!(call instanceof JSONObject)) {
+			return completed(Response.error(null, INVALID_REQUEST, "Invalid Request"));
+		}
+		JSONObject request = (JSONObject) call;
+		final boolean notification = !request.containsKey("id");
+		final Object id = request.get("id");
+		Object name = request.get("method");
+		if (!VERSION.equals(request.get("jsonrpc")) || !(name instanceof String)) {
+			return completed(Response.error(id, INVALID_REQUEST, "Invalid Request"));
+		}
+		final Method method = METHODS.get(target.getClass()).get(name);
+		if (method == null) {
+			return notification ? null : completed(Response.error(id, METHOD_NOT_FOUND, "Method not found"));
+		}
+		final Object params = request.get("params");
+		Call task = new Call(id, new Callable<Response>() {
+			@Override
+			public Response call() {
+				return invoke(method, params, id);
+			}
+		});
+		if (method.getAnnotation(JSONRPCMethod.class).concurrent()) {
+			executor.execute(task);
+		} else {
+			task.run();
+		}
+		return notification ? null : task;
+	}
+
+	/**
+	 * @param response a response known in advance, such as an error
+	 * @return a completed future of the response
+	 */
+	public static Future<Response> completed(Response response) {
+		FutureTask<Response> task = new FutureTask<Response>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, response);
+		task.run();
+		return task;
+	}
+
+	/**
+	 * @param response a response returned by {@link #dispatch(Object)}
+	 * @return the id of its call, null if unknown
+	 */
+	public static Object getId(Future<Response> response) {
+		return response instanceof Call ? ((Call) response).id : null;
+	}
+
+	/**
+	 * Pending response of a call, knowing the id of the call before it completes.
+	 */
+	private static final class Call extends FutureTask<Response> {
+
+		final Object id;
+
+		Call(Object id, Callable<Response> callable) {
+			super(callable);
+			this.id = id;
+		}
+
+	}
+
+	private Response invoke(Method method, Object params, Object id) {
+		Object[] args;
+		try {
+			args = toArguments(method, params);
+		} catch (RuntimeException e) {
+			LOG.debug("Invalid parameters of JSON-RPC method {}", method.getName(), e);
+			args = null;
+		}
+		if (args == null) {
+			return Response.error(id, INVALID_PARAMS, "Invalid params");
+		}
+		try {
+			return Response.result(id, method.invoke(target, args));
+		} catch (InvocationTargetException e) {
+			LOG.warn("JSON-RPC method {} failed", method.getName(), e.getCause());
+			return Response.error(id, INTERNAL_ERROR, "Internal error");
+		} catch (Exception e) {
+			LOG.warn("Could not call JSON-RPC method {}", method.getName(), e);
+			return Response.error(id, INTERNAL_ERROR, "Internal error");
+		}
+	}
+
+	private static Object[] toArguments(Method method, Object params) {
+		Type[] types = method.getGenericParameterTypes();
+		ParserConfig config = JSONSerializerUtils.getParserConfig();
+		if (params == null) {
+			return types.length == 0 ? new Object[0] : null;
+		}
+		if (params instanceof JSONArray) {
+			JSONArray values = (JSONArray) params;
+			if (values.size() != types.length) {
+				return null;
+			}
+			Object[] args = new Object[types.length];
+			for (int i = 0; i < types.length; i++) {
+				args[i] = TypeUtils.cast(values.get(i), types[i], config);
+			}
+			return args;
+		}
+		if (params instanceof JSONObject && types.length == 1) {
+			return new Object[] { TypeUtils.cast(params, types[0], config) };
+		}
+		return null;
+	}
+
+	/**
+	 * Outcome of a call: either a result or an error code with its message.
+	 */
+	public static class Response {
+
+		private final Object id;
+		private final Object result;
+		private final int code;
+		private final String message;
+
+		private Response(Object id, Object result, int code, String message) {
+			this.id = id;
+			this.result = result;
+			this.code = code;
+			this.message = message;
+		}
+
+		public static Response result(Object id, Object result) {
+			return new Response(id, result, 0, null);
+		}
+
+		public static Response error(Object id, int code, String message) {
+			return new Response(id, null, code, message);
+		}
+
+		public Object getId() {
+			return id;
+		}
+
+		public Object getResult() {
+			return result;
+		}
+
+		public boolean isError() {
+			return message != null;
+		}
+
+		public int getCode() {
+			return code;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Callbacks around the phases of a JSON result, for instance to open tracing
+ * spans. Listeners are declared as beans of this type in <code>struts.xml</code>:
+ *
+ * <pre>
+ * &lt;bean type=&quot;org.apache.struts2.fastjson.JSONResultListener&quot; name=&quot;tracing&quot; class=&quot;com.example.TracingListener&quot; /&gt;
+ * </pre>
+ *
+ * All beans of this type are called, in no particular order. Asynchronous
+ * results call them on the executor thread, and the callbacks must not throw.
+ */
+public interface JSONResultListener {
+
+	/**
+	 * Called before the root object is serialized.
+	 *
+	 * @param request the current request
+	 * @param action namespace and name of the action
+	 */
+	void beforeSerialize(HttpServletRequest request, String action);
+
+	/**
+	 * Called once the response body has been serialized and, if requested, compressed.
+	 *
+	 * @param request the current request
+	 * @param action namespace and name of the action
+	 * @param bytes size of the response body
+	 * @param nanos time spent serializing
+	 */
+	void afterSerialize(HttpServletRequest request, String action, long bytes, long nanos);
+
+	/**
+	 * Called before the response is sent.
+	 *
+	 * @param request the current request
+	 * @param action namespace and name of the action
+	 */
+	void beforeWrite(HttpServletRequest request, String action);
+
+	/**
+	 * Called once the response has been sent, or handed over to the container in non-blocking mode.
+	 *
+	 * @param request the current request
+	 * @param action namespace and name of the action
+	 * @param bytes size of the response body
+	 * @param compressed whether the body is gzip compressed
+	 */
+	void afterWrite(HttpServletRequest request, String action, long bytes, boolean compressed);
+
+	/**
+	 * Called when the result failed, was rejected or exceeded a limit.
+	 *
+	 * @param request the current request
+	 * @param action namespace and name of the action
+	 * @param error the failure
+	 */
+	void onError(HttpServletRequest request, String action, Throwable error);
+
+}
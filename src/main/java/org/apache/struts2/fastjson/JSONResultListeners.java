@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.util.Set;
+
+import com.opensymphony.xwork2.inject.Container;
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * Collects the {@link JSONResultListener} beans of the container once, results
+ * get the same array for every request.
+ */
+public class JSONResultListeners {
+
+	static final JSONResultListener[] NONE = new JSONResultListener[0];
+
+	private Container container;
+	private volatile JSONResultListener[] listeners;
+
+	@Inject
+	public void setContainer(Container container) {
+		this.container = container;
+	}
+
+	/**
+	 * @return the listeners, an empty array if none is declared
+	 */
+	public JSONResultListener[] getListeners() {
+		JSONResultListener[] result = listeners;
+		if (result == null) {
+			Set<String> names = container.getInstanceNames(JSONResultListener.class);
+			if (names.isEmpty()) {
+				result = NONE;
+			} else {
+				result = new JSONResultListener[names.size()];
+				int i = 0;
+				for (String name : names) {
+					result[i++] = container.getInstance(JSONResultListener.class, name);
+				}
+			}
+			listeners = result;
+		}
+		return result;
+	}
+
+}
@@ -1,23 +1,58 @@
 package org.apache.struts2.fastjson;
 
 import java.io.IOException;
-
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.struts2.StrutsConstants;
 import org.apache.struts2.StrutsStatics;
+import org.apache.struts2.fastjson.metrics.AllocationCounter;
+import org.apache.struts2.fastjson.metrics.JSONResultMetrics;
+import org.apache.struts2.fastjson.metrics.JSONResultMetrics.Phase;
+import org.apache.struts2.fastjson.metrics.MeteredOutputStream;
+import org.apache.struts2.fastjson.utils.JSONBulkhead;
+import org.apache.struts2.fastjson.utils.JSONCancellation;
+import org.apache.struts2.fastjson.utils.JSONExecutors;
+import org.apache.struts2.fastjson.utils.JSONOutputLimits;
 import org.apache.struts2.fastjson.utils.JSONOutputUtils;
+import org.apache.struts2.fastjson.utils.NonBlockingBodyWriter;
+import org.apache.struts2.fastjson.utils.PropertyPath;
 import org.apache.struts2.fastjson.utils.SerializationParams;
+import org.apache.struts2.fastjson.utils.SpillableOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.opensymphony.xwork2.ActionContext;
 import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.ActionProxy;
 import com.opensymphony.xwork2.Result;
+import com.opensymphony.xwork2.inject.Container;
 import com.opensymphony.xwork2.inject.Inject;
 import com.opensymphony.xwork2.util.ValueStack;
 
+/**
+ * Base of the JSON results: finds the root object, serializes it and sends it
+ * with the configured wrapping, compression, caching headers and limits.
+ * <p/>
+ * A serialization in progress is aborted when its {@link JSONCancellation} is
+ * raised, which only happens with a {@link #setResultTimeout(long) result timeout}
+ * or on the {@link #setEnableAsync(boolean) async} path. A client disconnecting
+ * is only noticed there, reported by the container through the async context;
+ * on the request thread, and with {@link #setNonBlocking(boolean) non-blocking}
+ * sending alone, the body is serialized completely and the disconnect surfaces
+ * as a failed write afterwards.
+ */
 @SuppressWarnings("serial")
 public abstract class JSONResultSupport implements Result {
 
@@ -36,33 +71,556 @@ public abstract class JSONResultSupport implements Result {
     protected String contentType;
     protected String wrapPrefix;
     protected String wrapSuffix;
+    protected int bufferThreshold = 4 * 1024 * 1024;
+    protected boolean enableETag = false;
+    protected boolean enableAsync = false;
+    protected long asyncTimeout = 0;
+    protected boolean nonBlocking = false;
+    protected long resultTimeout = 0;
+    protected long maxBytes = 0;
+    protected int limitStatus = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    protected String heavy;
+    protected long heavyThreshold = 0;
+    protected long bulkheadTimeout = 1000;
+    protected int bulkheadStatus = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+    protected transient volatile JSONCancellation cancellation;
+    protected transient String actionKey;
+    protected String metricsName = "jmx";
+    protected transient Container container;
+    protected transient JSONResultMetrics metrics;
+    protected transient MeteredOutputStream compressor;
+    protected transient JSONResultListeners listenerRegistry;
+    protected transient JSONResultListener[] listeners = JSONResultListeners.NONE;
+    protected transient HttpServletRequest currentRequest;
     
     @Inject(StrutsConstants.STRUTS_I18N_ENCODING)
     public void setDefaultEncoding(String val) {
         this.defaultEncoding = val;
     }
 
+    @Inject(value = "struts.fastjson.metrics", required = false)
+    public void setMetricsName(String metricsName) {
+        this.metricsName = metricsName;
+    }
+
+    @Inject(required = false)
+    public void setContainer(Container container) {
+        this.container = container;
+    }
+
+    @Inject(required = false)
+    public void setListenerRegistry(JSONResultListeners listenerRegistry) {
+        this.listenerRegistry = listenerRegistry;
+    }
+
     public void execute(ActionInvocation invocation) throws Exception {
         ActionContext actionContext = invocation.getInvocationContext();
         HttpServletRequest request = (HttpServletRequest) actionContext.get(StrutsStatics.HTTP_REQUEST);
         HttpServletResponse response = (HttpServletResponse) actionContext.get(StrutsStatics.HTTP_RESPONSE);
+        // only a deadline or an asynchronous execution can raise the token
+        boolean async = enableAsync && request.isAsyncSupported();
+        cancellation = resultTimeout > 0 || async ? new JSONCancellation(resultTimeout) : null;
+        ActionProxy proxy = invocation.getProxy();
+        actionKey = proxy.getNamespace() + "/" + proxy.getActionName();
+        metrics = lookupMetrics();
+        listeners = listenerRegistry == null ? JSONResultListeners.NONE : listenerRegistry.getListeners();
+        currentRequest = request;
         try {
+        	// the value stack is bound to the request thread
+        	long start = startTimer();
         	Object rootObject = findRootObject(invocation);
-        	String jsonString = createJSONString(request, rootObject);
-            writeToResponse(response, addCallbackIfApplicable(request, jsonString), enableGzip(request));
+        	recordPhase(Phase.FIND_ROOT, start);
+        	if (async) {
+        		executeAsync(request, response, rootObject);
+        	} else if (nonBlocking && request.isAsyncSupported()) {
+        		writeResponseNonBlocking(request, response, rootObject);
+        	} else {
+        		writeResponse(request, response, rootObject);
+        	}
         } catch (IOException exception) {
             LOG.error(exception.getMessage(), exception);
+            recordError(exception);
             throw exception;
+        } catch (RuntimeException exception) {
+        	if (exception instanceof RejectedExecutionException) {
+        		onRejected(response);
+        	} else if (JSONCancellation.isCancellation(exception)) {
+        		onCancelled(response);
+        	} else if (JSONOutputLimits.isLimitExceeded(exception)) {
+        		onLimitExceeded(response, exception);
+        	} else {
+        		recordError(exception);
+        		throw exception;
+        	}
+        }
+    }
+
+    /**
+     * @return the metrics selected by the constant <code>struts.fastjson.metrics</code>, null if disabled
+     */
+    protected JSONResultMetrics lookupMetrics() {
+        if (container == null || metricsName == null || metricsName.length() == 0) {
+        	return null;
+        }
+        JSONResultMetrics instance = container.getInstance(JSONResultMetrics.class, metricsName);
+        return instance != null && instance.isEnabled() ? instance : null;
+    }
+
+    /**
+     * @return the start of a measured phase, 0 if metrics are disabled
+     */
+    protected long startTimer() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @param phase the measured phase
+     * @param start the value returned by {@link #startTimer()} when the phase began
+     */
+    protected void recordPhase(Phase phase, long start) {
+        if (metrics != null) {
+        	metrics.recordPhase(getClass().getSimpleName(), actionKey, phase, System.nanoTime() - start);
+        }
+    }
+
+    protected void recordError(Throwable error) {
+        if (metrics != null) {
+        	metrics.recordError(getClass().getSimpleName(), actionKey, error);
+        }
+        for (JSONResultListener listener : listeners) {
+        	listener.onError(currentRequest, actionKey, error);
+        }
+    }
+
+    /**
+     * Called when a heavy result got no permit of the {@link JSONBulkhead} in
+     * time, or the async executor refused it, responds with the
+     * {@link #setBulkheadStatus(int) bulkhead status}.
+     *
+     * @param response the current response
+     */
+    protected void onRejected(HttpServletResponse response) {
+        recordError(new RejectedExecutionException("No bulkhead permit for " + actionKey));
+        LOG.warn("JSON result of {} rejected, too many heavy results in progress", actionKey);
+        if (!response.isCommitted()) {
+        	try {
+        		response.sendError(bulkheadStatus);
+        	} catch (IOException e) {
+        		LOG.debug(e.getMessage(), e);
+        	}
+        }
+    }
+
+    /**
+     * @return true if the result is configured as heavy or its responses are
+     *         estimated to exceed the heavy threshold
+     */
+    protected boolean isHeavy() {
+        if (heavy != null) {
+        	return Boolean.parseBoolean(heavy);
         }
+        return heavyThreshold > 0 && actionKey != null && JSONBulkhead.getEstimate(actionKey) >= heavyThreshold;
+    }
+
+    /**
+     * Called before the response body is written and before a heavy result
+     * acquires its permit, for slow preparations which must not hold a permit,
+     * such as waiting for values computed on other threads.
+     *
+     * @param request the current request
+     * @param rootObject the object to be serialized
+     */
+    protected void beforeSerialize(HttpServletRequest request, Object rootObject) {
+    }
+
+    /**
+     * Writes the response body into the buffer, heavy results only run with a
+     * permit of the {@link JSONBulkhead}.
+     *
+     * @throws RejectedExecutionException if no permit was available in time
+     */
+    private void writeBody(HttpServletRequest request, Object rootObject, SpillableOutputStream buffer, boolean gzip)
+    		throws IOException {
+        beforeSerialize(request, rootObject);
+        Semaphore permit = null;
+        if (isHeavy()) {
+        	permit = JSONBulkhead.acquire(bulkheadTimeout);
+        	if (permit == null) {
+        		throw new RejectedExecutionException("No bulkhead permit for " + actionKey);
+        	}
+        }
+        for (JSONResultListener listener : listeners) {
+        	listener.beforeSerialize(request, actionKey);
+        }
+        boolean timed = metrics != null || listeners.length > 0;
+        long start = timed ? System.nanoTime() : 0;
+        long allocated = metrics != null ? AllocationCounter.getAllocatedBytes() : -1;
+        try {
+        	writeJSON(request, rootObject, buffer, gzip);
+        } finally {
+        	if (permit != null) {
+        		permit.release();
+        	}
+        }
+        long elapsed = timed ? System.nanoTime() - start : 0;
+        for (JSONResultListener listener : listeners) {
+        	listener.afterSerialize(request, actionKey, buffer.size(), elapsed);
+        }
+        if (metrics != null) {
+        	// allocations of parallel chunks and deferred getters happen on other threads and are not counted
+        	allocated = allocated < 0 ? -1 : AllocationCounter.getAllocatedBytes() - allocated;
+        	String profile = getClass().getSimpleName();
+        	long raw = compressor != null ? compressor.getCount() : buffer.size();
+        	if (compressor != null) {
+        		metrics.recordPhase(profile, actionKey, Phase.SERIALIZE, elapsed - compressor.getNanos());
+        		metrics.recordPhase(profile, actionKey, Phase.COMPRESS, compressor.getNanos());
+        	} else {
+        		metrics.recordPhase(profile, actionKey, Phase.SERIALIZE, elapsed);
+        	}
+        	metrics.recordBytes(profile, actionKey, raw, buffer.size());
+        	if (allocated >= 0) {
+        		metrics.recordAllocation(profile, actionKey, allocated, raw);
+        	}
+        }
+        if (actionKey != null) {
+        	JSONBulkhead.record(actionKey, buffer.size());
+        }
+    }
+
+    /**
+     * Called when the output exceeded one of its limits, responds with the
+     * {@link #setLimitStatus(int) limit status}.
+     *
+     * @param response the current response
+     * @param exception the exception thrown by the serialization
+     */
+    protected void onLimitExceeded(HttpServletResponse response, Throwable exception) {
+        recordError(exception);
+        LOG.warn(exception.getMessage());
+        if (!response.isCommitted()) {
+        	try {
+        		response.sendError(limitStatus);
+        	} catch (IOException e) {
+        		LOG.debug(e.getMessage(), e);
+        	}
+        }
+    }
+
+    /**
+     * Called when the serialization has been aborted by the {@link #getCancellation()
+     * cancellation token}, responds with 503 Service Unavailable if the deadline
+     * of the result has passed.
+     *
+     * @param response the current response
+     */
+    protected void onCancelled(HttpServletResponse response) {
+        JSONCancellation.aborted();
+        if (metrics != null) {
+        	metrics.recordAbort(getClass().getSimpleName(), actionKey);
+        }
+        JSONCancellation cancellation = this.cancellation;
+        LOG.debug("JSON result cancelled: {}", cancellation == null ? null : cancellation.getReason());
+        if (cancellation != null && cancellation.isExpired() && !response.isCommitted()) {
+        	try {
+        		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        	} catch (IOException e) {
+        		LOG.debug(e.getMessage(), e);
+        	}
+        }
+    }
+
+    /**
+     * @return the cancellation token of the current execution, the serialization
+     *         must stop once it is raised; null when neither a result timeout nor
+     *         an asynchronous execution can raise it
+     */
+    protected JSONCancellation getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Serializes the root object and sends it.
+     *
+     * @param request the current request
+     * @param response the current response
+     * @param rootObject the object to be serialized
+     * @throws IOException in case of IO errors
+     */
+    protected void writeResponse(HttpServletRequest request, HttpServletResponse response, Object rootObject) throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(bufferThreshold, enableETag);
+        try {
+        	boolean gzip = enableGzip(request);
+        	writeBody(request, rootObject, buffer, gzip);
+        	checkCancelled();
+        	for (JSONResultListener listener : listeners) {
+        		listener.beforeWrite(request, actionKey);
+        	}
+        	long start = startTimer();
+        	writeToResponse(request, response, buffer, gzip);
+        	recordPhase(Phase.WRITE, start);
+        	for (JSONResultListener listener : listeners) {
+        		listener.afterWrite(request, actionKey, buffer.size(), gzip);
+        	}
+        } finally {
+        	buffer.release();
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancellation != null) {
+        	cancellation.check();
+        }
+    }
+
+    /**
+     * Serializes the root object into the buffer and sends it with a
+     * {@link NonBlockingBodyWriter}: the request is put into asynchronous mode
+     * and the calling thread returns while the client drains the socket.
+     *
+     * @param request the current request
+     * @param response the current response
+     * @param rootObject the object to be serialized
+     * @return true if the body has been handed over to the writer, which completes the request
+     * @throws IOException in case of IO errors
+     */
+    protected boolean writeResponseNonBlocking(HttpServletRequest request, HttpServletResponse response, Object rootObject) throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(bufferThreshold, enableETag);
+        boolean handedOver = false;
+        try {
+        	boolean gzip = enableGzip(request);
+        	writeBody(request, rootObject, buffer, gzip);
+        	checkCancelled();
+        	for (JSONResultListener listener : listeners) {
+        		listener.beforeWrite(request, actionKey);
+        	}
+        	// only the headers and handing over are measured, the body is sent later
+        	long start = startTimer();
+        	if (JSONOutputUtils.prepareResponse(createSerializationParams(response, gzip), buffer,
+        			request.getHeader("If-None-Match"))) {
+        		AsyncContext asyncContext = request.isAsyncStarted() ? request.getAsyncContext() : startAsync(request, response);
+        		NonBlockingBodyWriter.write(response.getOutputStream(), buffer, asyncContext);
+        		handedOver = true;
+        	}
+        	recordPhase(Phase.WRITE, start);
+        	for (JSONResultListener listener : listeners) {
+        		listener.afterWrite(request, actionKey, buffer.size(), gzip);
+        	}
+        	return handedOver;
+        } finally {
+        	if (!handedOver) {
+        		buffer.release();
+        	}
+        }
+    }
+
+    /**
+     * Puts the request into asynchronous mode and serializes and sends the root
+     * object on the {@link #getAsyncExecutor() async executor}, releasing the
+     * container thread. Everything the serialization needs must be reachable
+     * from the root object, the action context is gone once the request thread
+     * has left the action.
+     *
+     * @param request the current request
+     * @param response the current response
+     * @param rootObject the object to be serialized
+     * @throws IOException if the request does not support async processing and writing fails
+     */
+    protected void executeAsync(final HttpServletRequest request, final HttpServletResponse response, final Object rootObject)
+    		throws IOException {
+        if (!request.isAsyncSupported()) {
+        	// a filter or servlet of the chain is not async capable, serialize on the request thread
+        	writeResponse(request, response, rootObject);
+        	return;
+        }
+        final AsyncContext asyncContext = startAsync(request, response);
+        Runnable task = new Runnable() {
+        	@Override
+        	public void run() {
+        		boolean handedOver = false;
+        		try {
+        			if (nonBlocking) {
+        				handedOver = writeResponseNonBlocking(request, response, rootObject);
+        			} else {
+        				writeResponse(request, response, rootObject);
+        			}
+        		} catch (Throwable throwable) {
+        			if (throwable instanceof RejectedExecutionException) {
+        				onRejected(response);
+        			} else if (JSONCancellation.isCancellation(throwable)) {
+        				onCancelled(response);
+        			} else if (JSONOutputLimits.isLimitExceeded(throwable)) {
+        				onLimitExceeded(response, throwable);
+        			} else {
+        				LOG.error(throwable.getMessage(), throwable);
+        				recordError(throwable);
+        				sendAsyncError(response);
+        			}
+        		} finally {
+        			if (!handedOver) {
+        				completeAsync(asyncContext);
+        			}
+        		}
+        	}
+        };
+        try {
+        	getAsyncExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+        	onRejected(response);
+        	completeAsync(asyncContext);
+        }
+    }
+
+    private AsyncContext startAsync(HttpServletRequest request, HttpServletResponse response) {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        if (asyncTimeout > 0) {
+        	asyncContext.setTimeout(asyncTimeout);
+        }
+        asyncContext.addListener(new AsyncListener() {
+        	@Override
+        	public void onStartAsync(AsyncEvent event) {
+        	}
+        	@Override
+        	public void onComplete(AsyncEvent event) {
+        		onAsyncComplete(event);
+        	}
+        	@Override
+        	public void onTimeout(AsyncEvent event) {
+        		cancel("async timeout");
+        		onAsyncTimeout(event);
+        	}
+        	@Override
+        	public void onError(AsyncEvent event) {
+        		cancel("async error");
+        		onAsyncError(event);
+        	}
+        });
+        return asyncContext;
+    }
+
+    private void cancel(String reason) {
+        JSONCancellation cancellation = this.cancellation;
+        if (cancellation != null) {
+        	cancellation.cancel(reason);
+        }
+    }
+
+    private void sendAsyncError(HttpServletResponse response) {
+        try {
+        	if (!response.isCommitted()) {
+        		response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        	}
+        } catch (Exception e) {
+        	LOG.debug(e.getMessage(), e);
+        }
+    }
+
+    private void completeAsync(AsyncContext asyncContext) {
+        try {
+        	asyncContext.complete();
+        } catch (IllegalStateException e) {
+        	// already completed by the container, e.g. after a timeout
+        	LOG.debug(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the executor serializing asynchronous results
+     */
+    protected Executor getAsyncExecutor() {
+        return JSONExecutors.getExecutor();
+    }
+
+    /**
+     * Called by the container once an asynchronous result has been completed.
+     */
+    protected void onAsyncComplete(AsyncEvent event) {
+    }
+
+    /**
+     * Called by the container when an asynchronous result exceeded its timeout,
+     * the container completes the request with an error afterwards.
+     */
+    protected void onAsyncTimeout(AsyncEvent event) {
+        LOG.warn("Asynchronous JSON result timed out after {} ms", event.getAsyncContext().getTimeout());
+    }
+
+    /**
+     * Called by the container when an asynchronous result failed, for instance
+     * because the client went away.
+     */
+    protected void onAsyncError(AsyncEvent event) {
+        LOG.debug("Asynchronous JSON result failed", event.getThrowable());
     }
 
     protected abstract String createJSONString(HttpServletRequest request, Object rootObject);
 
+    /**
+     * Writes the JSON of the root object, subclasses able to serialize into a
+     * writer should override it to avoid building the JSON String.
+     *
+     * @param request the current request
+     * @param rootObject the object to be serialized
+     * @param writer the writer receiving the JSON
+     * @throws IOException in case of IO errors
+     */
+    protected void writeJSONString(HttpServletRequest request, Object rootObject, Writer writer) throws IOException {
+    	writer.write(createJSONString(request, rootObject));
+    }
+
+    /**
+     * Writes the encoded and, if requested, compressed response body including
+     * the JSONP callback and the configured wrappers.
+     *
+     * @param request the current request
+     * @param rootObject the object to be serialized
+     * @param out receives the response body
+     * @param gzip whether the body is gzip compressed
+     * @throws IOException in case of IO errors
+     */
+    protected void writeJSON(HttpServletRequest request, Object rootObject, OutputStream out, boolean gzip) throws IOException {
+    	SerializationParams params = createSerializationParams(null, gzip);
+    	String callbackName = getCallbackName(request);
+    	OutputStream target = out;
+    	compressor = null;
+    	if (gzip) {
+    		target = new GZIPOutputStream(out, 8192);
+    		if (metrics != null) {
+    			// measures the compression apart from the serialization
+    			target = compressor = new MeteredOutputStream(target);
+    		}
+    	}
+    	if (maxBytes > 0) {
+    		// counts the encoded bytes, ahead of the compression
+    		target = JSONOutputLimits.limit(target, maxBytes);
+    	}
+    	Writer writer = new OutputStreamWriter(target, getEncoding());
+    	try {
+    		JSONOutputUtils.writeWrapperStart(writer, params);
+    		if (callbackName != null) {
+    			writer.write(callbackName);
+    			writer.write('(');
+    		}
+    		writeJSONString(request, rootObject, writer);
+    		if (callbackName != null) {
+    			writer.write(')');
+    		}
+    		JSONOutputUtils.writeWrapperEnd(writer, params);
+    	} finally {
+    		// finishes the gzip stream, the buffer itself is only flushed
+    		writer.close();
+    	}
+    }
+
 	protected Object findRootObject(ActionInvocation invocation) {
         Object rootObject;
         if (this.root != null) {
             ValueStack stack = invocation.getStack();
-            rootObject = stack.findValue(root);
+            // simple paths are read through cached getters, anything else is evaluated by OGNL
+            PropertyPath path = PropertyPath.compile(root);
+            rootObject = path == null ? PropertyPath.UNRESOLVED : path.getValue(stack.getRoot());
+            if (rootObject == PropertyPath.UNRESOLVED) {
+                rootObject = stack.findValue(root);
+            }
         } else {
             rootObject = invocation.getStack().peek(); // model overrides action
         }
@@ -79,6 +637,16 @@ public abstract class JSONResultSupport implements Result {
                 json, false, gzip, noCache, statusCode, errorCode, prefix, contentType, wrapPrefix,
                 wrapSuffix));
     }
+
+    protected void writeToResponse(HttpServletRequest request, HttpServletResponse response, SpillableOutputStream body,
+    		boolean gzip) throws IOException {
+    	JSONOutputUtils.writeJSONToResponse(createSerializationParams(response, gzip), body, request.getHeader("If-None-Match"));
+    }
+
+    protected SerializationParams createSerializationParams(HttpServletResponse response, boolean gzip) {
+    	return new SerializationParams(response, getEncoding(), isWrapWithComments(), null, false, gzip, noCache,
+    			statusCode, errorCode, prefix, contentType, wrapPrefix, wrapSuffix);
+    }
     
     /**
      * Retrieve the encoding <p/>
@@ -105,12 +673,22 @@ public abstract class JSONResultSupport implements Result {
     }
 
     protected String addCallbackIfApplicable(HttpServletRequest request, String json) {
+        String callbackName = getCallbackName(request);
+        if (callbackName != null)
+            json = callbackName + "(" + json + ")";
+        return json;
+    }
+
+    /**
+     * @return the JSONP callback function requested, null if none
+     */
+    protected String getCallbackName(HttpServletRequest request) {
         if ((callbackParameter != null) && (callbackParameter.length() > 0)) {
             String callbackName = request.getParameter(callbackParameter);
             if ((callbackName != null) && (callbackName.length() > 0))
-                json = callbackName + "(" + json + ")";
+                return callbackName;
         }
-        return json;
+        return null;
     }
 
     /**
@@ -232,6 +810,176 @@ public abstract class JSONResultSupport implements Result {
         this.wrapSuffix = wrapSuffix;
     }
 
+    public int getBufferThreshold() {
+        return bufferThreshold;
+    }
+
+    /**
+     * Bytes of the response kept in memory, larger responses are buffered in a
+     * temporary file until their Content-Length is known. Defaults to 4 MB; all
+     * buffers together are bounded by <code>struts.fastjson.buffer.maxMemory</code>,
+     * beyond which they spill earlier
+     *
+     * @param bufferThreshold
+     */
+    public void setBufferThreshold(int bufferThreshold) {
+        this.bufferThreshold = bufferThreshold;
+    }
+
+    public boolean isEnableETag() {
+        return enableETag;
+    }
+
+    /**
+     * Send a strong ETag computed from the response body and answer matching
+     * If-None-Match requests with 304 Not Modified
+     *
+     * @param enableETag
+     */
+    public void setEnableETag(boolean enableETag) {
+        this.enableETag = enableETag;
+    }
+
+    public boolean isEnableAsync() {
+        return enableAsync;
+    }
+
+    /**
+     * Serialize and send the result on the async executor instead of the
+     * container thread, requires a Servlet 3 container and an async supporting filter.
+     * Only then a client disconnecting aborts the serialization in progress
+     *
+     * @param enableAsync
+     */
+    public void setEnableAsync(boolean enableAsync) {
+        this.enableAsync = enableAsync;
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    /**
+     * Milliseconds an asynchronous result may take, 0 or less keeps the container default
+     *
+     * @param asyncTimeout
+     */
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+
+    /**
+     * Send the buffered response with the Servlet 3.1 non-blocking API, no
+     * thread is blocked while a slow client receives the body. The body is
+     * serialized before, a client disconnecting only stops sending it
+     *
+     * @param nonBlocking
+     */
+    public void setNonBlocking(boolean nonBlocking) {
+        this.nonBlocking = nonBlocking;
+    }
+
+    public long getResultTimeout() {
+        return resultTimeout;
+    }
+
+    /**
+     * Milliseconds the serialization may take, a result exceeding it is aborted
+     * and answered with 503 Service Unavailable, 0 or less for no deadline.
+     * Client disconnects are not detected by the deadline, only on the
+     * {@link #setEnableAsync(boolean) async} path
+     *
+     * @param resultTimeout
+     */
+    public void setResultTimeout(long resultTimeout) {
+        this.resultTimeout = resultTimeout;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Maximum bytes of the encoded response before compression, a larger response
+     * fails with the limit status, 0 or less for no limit
+     *
+     * @param maxBytes
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getLimitStatus() {
+        return limitStatus;
+    }
+
+    /**
+     * Status sent when the response exceeds one of its limits, defaults to 500
+     *
+     * @param limitStatus
+     */
+    public void setLimitStatus(int limitStatus) {
+        this.limitStatus = limitStatus;
+    }
+
+    public String getHeavy() {
+        return heavy;
+    }
+
+    /**
+     * Whether the result is heavy and runs under the bulkhead, by default
+     * results whose responses are estimated above the heavy threshold are
+     *
+     * @param heavy true or false
+     */
+    public void setHeavy(String heavy) {
+        this.heavy = heavy;
+    }
+
+    public long getHeavyThreshold() {
+        return heavyThreshold;
+    }
+
+    /**
+     * Estimated response size in bytes from which a result counts as heavy,
+     * 0 or less (the default) disables the estimation
+     *
+     * @param heavyThreshold
+     */
+    public void setHeavyThreshold(long heavyThreshold) {
+        this.heavyThreshold = heavyThreshold;
+    }
+
+    public long getBulkheadTimeout() {
+        return bulkheadTimeout;
+    }
+
+    /**
+     * Milliseconds a heavy result waits for a bulkhead permit
+     *
+     * @param bulkheadTimeout
+     */
+    public void setBulkheadTimeout(long bulkheadTimeout) {
+        this.bulkheadTimeout = bulkheadTimeout;
+    }
+
+    public int getBulkheadStatus() {
+        return bulkheadStatus;
+    }
+
+    /**
+     * Status sent when a heavy result is rejected, defaults to 503
+     *
+     * @param bulkheadStatus
+     */
+    public void setBulkheadStatus(int bulkheadStatus) {
+        this.bulkheadStatus = bulkheadStatus;
+    }
+
     /**
      * If defined will be used instead of {@link #defaultEncoding}, you can define it with result
      * &lt;result name=&quot;success&quot; type=&quot;json&quot;&gt;
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public action method callable through JSON-RPC 2.0, see the
+ * <code>enableRPC</code> parameter of the fastjson interceptor.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface JSONRPCMethod {
+
+	/**
+	 * @return name of the method in calls, defaults to the name of the Java method
+	 */
+	String name() default "";
+
+	/**
+	 * @return whether calls may run on the executor of the plugin, concurrently
+	 *         with the other calls of a batch; they have no <code>ActionContext</code> there
+	 */
+	boolean concurrent() default false;
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the bytes allocated by the current thread from
+ * <code>com.sun.management.ThreadMXBean</code>, which is looked up
+ * reflectively as not every JVM provides it. The method handle is bound once,
+ * reading the counter allocates nothing.
+ */
+public class AllocationCounter {
+
+	private static final MethodHandle ALLOCATED_BYTES;
+
+	static {
+		MethodHandle handle = null;
+		try {
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+			if (type.isInstance(threads)) {
+				boolean enabled = (Boolean) type.getMethod("isThreadAllocatedMemoryEnabled").invoke(threads);
+				if (enabled) {
+					handle = MethodHandles.publicLookup()
+							.findVirtual(type, "getThreadAllocatedBytes", MethodType.methodType(long.class, long.class))
+							.bindTo(threads);
+				}
+			}
+		} catch (Throwable e) {
+			handle = null;
+		}
+		ALLOCATED_BYTES = handle;
+	}
+
+	/**
+	 * @return true if the JVM counts allocations per thread
+	 */
+	public static boolean isSupported() {
+		return ALLOCATED_BYTES != null;
+	}
+
+	/**
+	 * @return bytes allocated by the current thread since it started, -1 if not supported
+	 */
+	public static long getAllocatedBytes() {
+		if (ALLOCATED_BYTES == null) {
+			return -1;
+		}
+		try {
+			return (long) ALLOCATED_BYTES.invokeExact(Thread.currentThread().getId());
+		} catch (Throwable e) {
+			return -1;
+		}
+	}
+
+}
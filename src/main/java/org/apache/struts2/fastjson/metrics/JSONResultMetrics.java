@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+/**
+ * Receives the measurements of JSON results. Implementations are declared as
+ * beans of this type and selected with the constant <code>struts.fastjson.metrics</code>,
+ * the plugin ships a JMX implementation named <code>jmx</code>.
+ * <p/>
+ * Results only measure while {@link #isEnabled()} is true, so a disabled
+ * implementation costs one call per result. All methods are called concurrently.
+ */
+public interface JSONResultMetrics {
+
+	/**
+	 * The phases of a result.
+	 */
+	enum Phase {
+
+		/** looking up the root object on the value stack */
+		FIND_ROOT,
+
+		/** building the serialization filters */
+		BUILD_FILTERS,
+
+		/** serializing the root object, without the compression time */
+		SERIALIZE,
+
+		/** gzip compression of the serialized JSON */
+		COMPRESS,
+
+		/** sending headers and body to the client */
+		WRITE
+
+	}
+
+	/**
+	 * @return true if results should measure and report
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param profile the kind of result, usually its class name
+	 * @param action namespace and name of the action
+	 * @param phase the measured phase
+	 * @param nanos duration of the phase
+	 */
+	void recordPhase(String profile, String action, Phase phase, long nanos);
+
+	/**
+	 * @param profile the kind of result, usually its class name
+	 * @param action namespace and name of the action
+	 * @param rawBytes size of the response body before compression
+	 * @param compressedBytes size of the response body sent, equal to rawBytes without compression
+	 */
+	void recordBytes(String profile, String action, long rawBytes, long compressedBytes);
+
+	/**
+	 * @param profile the kind of result, usually its class name
+	 * @param action namespace and name of the action
+	 * @param allocatedBytes bytes allocated by the serializing thread while serializing and compressing
+	 * @param rawBytes size of the response body before compression
+	 */
+	void recordAllocation(String profile, String action, long allocatedBytes, long rawBytes);
+
+	/**
+	 * @param profile the kind of result, usually its class name
+	 * @param action namespace and name of the action
+	 * @param error the failure, including exceeded limits and bulkhead rejections
+	 */
+	void recordError(String profile, String action, Throwable error);
+
+	/**
+	 * @param profile the kind of result, usually its class name
+	 * @param action namespace and name of the action
+	 */
+	void recordAbort(String profile, String action);
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.struts2.fastjson.metrics.JSONResultMetrics.Phase;
+
+/**
+ * Counters and latency histograms of a result profile and action.
+ */
+public class JSONResultStats implements JSONResultStatsMXBean {
+
+	private final Map<Phase, LatencyHistogram> phases = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+	private final AtomicLong results = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong aborts = new AtomicLong();
+	private final AtomicLong rawBytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+	private final AtomicLong allocations = new AtomicLong();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+	private final AtomicLong allocationPayload = new AtomicLong();
+
+	public JSONResultStats() {
+		for (Phase phase : Phase.values()) {
+			phases.put(phase, new LatencyHistogram());
+		}
+	}
+
+	public void recordPhase(Phase phase, long nanos) {
+		phases.get(phase).record(nanos);
+	}
+
+	public void recordBytes(long raw, long compressed) {
+		results.incrementAndGet();
+		rawBytes.addAndGet(raw);
+		compressedBytes.addAndGet(compressed);
+	}
+
+	public void recordAllocation(long allocated, long raw) {
+		allocations.incrementAndGet();
+		allocatedBytes.addAndGet(allocated);
+		allocationPayload.addAndGet(raw);
+	}
+
+	public void recordError() {
+		errors.incrementAndGet();
+	}
+
+	public void recordAbort() {
+		aborts.incrementAndGet();
+	}
+
+	@Override
+	public long getResults() {
+		return results.get();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public long getAborts() {
+		return aborts.get();
+	}
+
+	@Override
+	public long getRawBytes() {
+		return rawBytes.get();
+	}
+
+	@Override
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	@Override
+	public double getCompressionRatio() {
+		long raw = rawBytes.get();
+		return raw == 0 ? 1 : (double) compressedBytes.get() / raw;
+	}
+
+	@Override
+	public long getAllocatedBytesPerResult() {
+		long count = allocations.get();
+		return count == 0 ? 0 : allocatedBytes.get() / count;
+	}
+
+	@Override
+	public double getAllocationRatio() {
+		long payload = allocationPayload.get();
+		return payload == 0 ? 0 : (double) allocatedBytes.get() / payload;
+	}
+
+	@Override
+	public Map<String, PhaseStats> getPhases() {
+		Map<String, PhaseStats> result = new LinkedHashMap<String, PhaseStats>();
+		for (Map.Entry<Phase, LatencyHistogram> entry : phases.entrySet()) {
+			result.put(entry.getKey().name(), entry.getValue().getStats());
+		}
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram histogram : phases.values()) {
+			histogram.reset();
+		}
+		results.set(0);
+		errors.set(0);
+		aborts.set(0);
+		rawBytes.set(0);
+		compressedBytes.set(0);
+		allocations.set(0);
+		allocatedBytes.set(0);
+		allocationPayload.set(0);
+	}
+
+}
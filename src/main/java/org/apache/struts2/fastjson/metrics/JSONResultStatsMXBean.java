@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the statistics of a result profile and action.
+ */
+public interface JSONResultStatsMXBean {
+
+	long getResults();
+
+	long getErrors();
+
+	long getAborts();
+
+	long getRawBytes();
+
+	long getCompressedBytes();
+
+	/**
+	 * @return compressed bytes divided by raw bytes, 1 without compression
+	 */
+	double getCompressionRatio();
+
+	/**
+	 * @return average bytes allocated to serialize and compress a response, 0 if not measured
+	 */
+	long getAllocatedBytesPerResult();
+
+	/**
+	 * @return allocated bytes divided by raw response bytes, the allocation
+	 *         overhead of the serialization, 0 if not measured
+	 */
+	double getAllocationRatio();
+
+	/**
+	 * @return latency of each phase by phase name
+	 */
+	Map<String, PhaseStats> getPhases();
+
+	void reset();
+
+}
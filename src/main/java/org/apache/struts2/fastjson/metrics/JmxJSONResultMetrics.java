@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.struts2.fastjson.utils.JSONShutdown;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * Default {@link JSONResultMetrics}, keeping {@link JSONResultStats} per result
+ * profile and action and registering them with the platform MBean server as
+ * <code>org.apache.struts2.fastjson:type=JSONResult,profile=...,action=...</code>,
+ * plus the totals of all results as <code>org.apache.struts2.fastjson:type=JSONResult,name=total</code>.
+ * <p/>
+ * Disabled unless the constant <code>struts.fastjson.metrics.enabled</code> is true.
+ * At most <code>struts.fastjson.metrics.maxActions</code> actions are kept apart,
+ * defaulting to 500; the others of a profile share the action <code>(other)</code>.
+ * The MBeans are unregistered when the Struts dispatcher is destroyed, see {@link JSONShutdown}.
+ */
+public class JmxJSONResultMetrics implements JSONResultMetrics {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JmxJSONResultMetrics.class);
+
+	public static final String DOMAIN = "org.apache.struts2.fastjson";
+
+	/** action of the statistics shared by the actions beyond the limit */
+	public static final String OTHER_ACTIONS = "(other)";
+
+	private final ConcurrentMap<String, JSONResultStats> stats = new ConcurrentHashMap<String, JSONResultStats>();
+	private volatile boolean enabled;
+	private volatile int maxActions = 500;
+	private volatile JSONResultStats total;
+
+	@Inject(value = "struts.fastjson.metrics.enabled", required = false)
+	public void setEnabled(String enabled) {
+		this.enabled = Boolean.parseBoolean(enabled.trim());
+	}
+
+	@Inject(value = "struts.fastjson.metrics.maxActions", required = false)
+	public void setMaxActions(String maxActions) {
+		this.maxActions = Integer.parseInt(maxActions.trim());
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void recordPhase(String profile, String action, Phase phase, long nanos) {
+		getTotal().recordPhase(phase, nanos);
+		getStats(profile, action).recordPhase(phase, nanos);
+	}
+
+	@Override
+	public void recordBytes(String profile, String action, long rawBytes, long compressedBytes) {
+		getTotal().recordBytes(rawBytes, compressedBytes);
+		getStats(profile, action).recordBytes(rawBytes, compressedBytes);
+	}
+
+	@Override
+	public void recordAllocation(String profile, String action, long allocatedBytes, long rawBytes) {
+		getTotal().recordAllocation(allocatedBytes, rawBytes);
+		getStats(profile, action).recordAllocation(allocatedBytes, rawBytes);
+	}
+
+	@Override
+	public void recordError(String profile, String action, Throwable error) {
+		getTotal().recordError();
+		getStats(profile, action).recordError();
+	}
+
+	@Override
+	public void recordAbort(String profile, String action) {
+		getTotal().recordAbort();
+		getStats(profile, action).recordAbort();
+	}
+
+	private JSONResultStats getTotal() {
+		JSONResultStats result = total;
+		if (result == null) {
+			synchronized (this) {
+				result = total;
+				if (result == null) {
+					result = new JSONResultStats();
+					register(DOMAIN + ":type=JSONResult,name=total", result);
+					total = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the statistics of the given profile and action, registered on first
+	 *         use; the ones of {@link #OTHER_ACTIONS} once the limit is reached
+	 */
+	public JSONResultStats getStats(String profile, String action) {
+		String key = profile + '|' + action;
+		JSONResultStats result = stats.get(key);
+		if (result == null && stats.size() >= maxActions) {
+			action = OTHER_ACTIONS;
+			key = profile + '|' + action;
+			result = stats.get(key);
+		}
+		if (result == null) {
+			JSONResultStats created = new JSONResultStats();
+			result = stats.putIfAbsent(key, created);
+			if (result == null) {
+				result = created;
+				register(DOMAIN + ":type=JSONResult,profile=" + ObjectName.quote(String.valueOf(profile)) + ",action="
+						+ ObjectName.quote(String.valueOf(action)), created);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Registers an MBean with the platform MBean server until the application is undeployed.
+	 *
+	 * @param name object name of the MBean
+	 * @param mbean the MBean
+	 */
+	static void register(String name, Object mbean) {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName(name);
+			server.registerMBean(mbean, objectName);
+			JSONShutdown.register(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						server.unregisterMBean(objectName);
+					} catch (JMException e) {
+						LOG.debug("Could not unregister MBean {}", objectName, e);
+					}
+				}
+
+				@Override
+				public String toString() {
+					return "MBean " + objectName;
+				}
+			});
+		} catch (InstanceAlreadyExistsException e) {
+			// another application of the container registered it first
+			LOG.warn("MBean {} is already registered, these statistics are not exposed", name);
+		} catch (Exception e) {
+			LOG.warn("Could not register MBean " + name, e);
+		}
+	}
+
+}
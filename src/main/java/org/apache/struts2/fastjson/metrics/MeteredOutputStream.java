@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to a stream and the time spent in it, wrapped around
+ * a compressing stream it measures the raw size and the compression time.
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+
+	private long count;
+	private long nanos;
+
+	public MeteredOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		long start = System.nanoTime();
+		out.write(b);
+		count++;
+		nanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		out.write(b, off, len);
+		count += len;
+		nanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		long start = System.nanoTime();
+		out.flush();
+		nanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void close() throws IOException {
+		long start = System.nanoTime();
+		out.close();
+		nanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * @return bytes written
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return nanoseconds spent writing, flushing and closing the wrapped stream
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+}
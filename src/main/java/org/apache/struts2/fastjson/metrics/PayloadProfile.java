@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes and time per property path aggregated over the profiled responses of an action.
+ * The number of distinct paths is bounded, paths seen after the bound are dropped.
+ */
+public class PayloadProfile implements PayloadProfileMXBean {
+
+	private static final int MAX_PATHS = 2048;
+
+	private final ConcurrentMap<String, AtomicLong[]> paths = new ConcurrentHashMap<String, AtomicLong[]>();
+	private final AtomicLong samples = new AtomicLong();
+	private volatile int topN = 20;
+
+	/**
+	 * Adds the measurements of one profiled response.
+	 *
+	 * @param measurements count, bytes and nanoseconds by path
+	 */
+	public void record(Map<String, long[]> measurements) {
+		samples.incrementAndGet();
+		for (Map.Entry<String, long[]> entry : measurements.entrySet()) {
+			AtomicLong[] totals = paths.get(entry.getKey());
+			if (totals == null) {
+				if (paths.size() >= MAX_PATHS) {
+					continue;
+				}
+				AtomicLong[] created = new AtomicLong[] { new AtomicLong(), new AtomicLong(), new AtomicLong() };
+				totals = paths.putIfAbsent(entry.getKey(), created);
+				if (totals == null) {
+					totals = created;
+				}
+			}
+			long[] values = entry.getValue();
+			for (int i = 0; i < 3; i++) {
+				totals[i].addAndGet(values[i]);
+			}
+		}
+	}
+
+	@Override
+	public long getSamples() {
+		return samples.get();
+	}
+
+	@Override
+	public PropertyProfile[] getTopByBytes() {
+		return getTop(1);
+	}
+
+	@Override
+	public PropertyProfile[] getTopByTime() {
+		return getTop(2);
+	}
+
+	private PropertyProfile[] getTop(final int index) {
+		List<Map.Entry<String, AtomicLong[]>> entries = new ArrayList<Map.Entry<String, AtomicLong[]>>(paths.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLong[]>>() {
+			@Override
+			public int compare(Map.Entry<String, AtomicLong[]> o1, Map.Entry<String, AtomicLong[]> o2) {
+				long v1 = o1.getValue()[index].get();
+				long v2 = o2.getValue()[index].get();
+				return v1 < v2 ? 1 : (v1 == v2 ? 0 : -1);
+			}
+		});
+		long sampleCount = Math.max(1, samples.get());
+		int size = Math.min(topN, entries.size());
+		PropertyProfile[] result = new PropertyProfile[size];
+		for (int i = 0; i < size; i++) {
+			AtomicLong[] totals = entries.get(i).getValue();
+			result[i] = new PropertyProfile(entries.get(i).getKey(), totals[0].get(), totals[1].get(),
+					TimeUnit.NANOSECONDS.toMicros(totals[2].get()), totals[1].get() / sampleCount);
+		}
+		return result;
+	}
+
+	@Override
+	public int getTopN() {
+		return topN;
+	}
+
+	@Override
+	public void setTopN(int topN) {
+		this.topN = Math.max(1, topN);
+	}
+
+	@Override
+	public void reset() {
+		paths.clear();
+		samples.set(0);
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+/**
+ * Management interface of the payload profile of an action.
+ */
+public interface PayloadProfileMXBean {
+
+	/**
+	 * @return number of profiled responses
+	 */
+	long getSamples();
+
+	/**
+	 * @return the properties writing the most characters, the largest first
+	 */
+	PropertyProfile[] getTopByBytes();
+
+	/**
+	 * @return the properties taking the most time, the slowest first
+	 */
+	PropertyProfile[] getTopByTime();
+
+	int getTopN();
+
+	void setTopN(int topN);
+
+	void reset();
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.management.ObjectName;
+
+import com.alibaba.fastjson.serializer.AfterFilter;
+import com.alibaba.fastjson.serializer.BeforeFilter;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.PropertyPreFilter;
+import com.alibaba.fastjson.serializer.SerializeFilter;
+
+/**
+ * Sampling profiler attributing the characters and the time of a response to
+ * the property paths of the serialized graph, so the properties worth excluding
+ * can be found. The results of each action are aggregated into a
+ * {@link PayloadProfile} registered as
+ * <code>org.apache.struts2.fastjson:type=PayloadProfile,action=...</code>.
+ * <p/>
+ * Attribution is inclusive: the bytes of a property contain the ones of its
+ * nested properties, and elements of a collection share the path of the
+ * collection property. Entries of maps are attributed to the property holding the map.
+ * <p/>
+ * At most {@value #MAX_PROFILES} actions are profiled, responses of further
+ * actions are not. The MBeans are unregistered when the Struts dispatcher is destroyed.
+ */
+public class PayloadProfiler {
+
+	/** number of actions profiled, keeps the profiles and MBeans bounded */
+	public static final int MAX_PROFILES = 500;
+
+	private static final ConcurrentMap<String, PayloadProfile> PROFILES = new ConcurrentHashMap<String, PayloadProfile>();
+
+	/**
+	 * @param rate profile one in rate responses, 1 profiles all of them, 0 or less none
+	 * @return true if the current response should be profiled
+	 */
+	public static boolean sample(int rate) {
+		return rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+	}
+
+	/**
+	 * @param action namespace and name of the action
+	 * @return the profile of the action, registered on first use; null if
+	 *         {@value #MAX_PROFILES} other actions are already profiled
+	 */
+	public static PayloadProfile getProfile(String action) {
+		PayloadProfile profile = PROFILES.get(action);
+		if (profile == null) {
+			if (PROFILES.size() >= MAX_PROFILES) {
+				return null;
+			}
+			PayloadProfile created = new PayloadProfile();
+			profile = PROFILES.putIfAbsent(action, created);
+			if (profile == null) {
+				profile = created;
+				JmxJSONResultMetrics.register(JmxJSONResultMetrics.DOMAIN + ":type=PayloadProfile,action="
+						+ ObjectName.quote(String.valueOf(action)), created);
+			}
+		}
+		return profile;
+	}
+
+	/**
+	 * @param action namespace and name of the action
+	 * @return a session profiling one serialization, null if the action is not profiled
+	 */
+	public static Session start(String action) {
+		PayloadProfile profile = getProfile(action);
+		return profile == null ? null : new Session(profile);
+	}
+
+	/**
+	 * Profiles one serialization on one thread.
+	 */
+	public static class Session {
+
+		private final PayloadProfile profile;
+		private final Map<String, long[]> measurements = new HashMap<String, long[]>();
+		private final List<Frame> frames = new ArrayList<Frame>();
+		private JSONSerializer serializer;
+		private long flushed;
+
+		Session(PayloadProfile profile) {
+			this.profile = profile;
+		}
+
+		/**
+		 * @param writer the writer the serializer flushes to
+		 * @return a writer counting what has been flushed, positions in the output are derived from it
+		 */
+		public Writer wrap(Writer writer) {
+			return new FilterWriter(writer) {
+
+				@Override
+				public void write(int c) throws IOException {
+					flushed++;
+					out.write(c);
+				}
+
+				@Override
+				public void write(char[] cbuf, int off, int len) throws IOException {
+					flushed += len;
+					out.write(cbuf, off, len);
+				}
+
+				@Override
+				public void write(String str, int off, int len) throws IOException {
+					flushed += len;
+					out.write(str, off, len);
+				}
+
+			};
+		}
+
+		/**
+		 * @param filters the filters of the serialization
+		 * @return the filters extended by the profiling ones, which come last so
+		 *         properties excluded by other filters are not seen
+		 */
+		public SerializeFilter[] addFilters(SerializeFilter[] filters) {
+			SerializeFilter[] result = Arrays.copyOf(filters == null ? new SerializeFilter[0] : filters,
+					(filters == null ? 0 : filters.length) + 3);
+			int length = result.length;
+			result[length - 3] = new BeforeFilter() {
+				@Override
+				public void writeBefore(Object object) {
+					Frame parent = frames.isEmpty() ? null : frames.get(frames.size() - 1);
+					frames.add(new Frame(object, parent == null ? null : parent.path));
+				}
+			};
+			result[length - 2] = new PropertyPreFilter() {
+				@Override
+				public boolean apply(JSONSerializer serializer, Object object, String name) {
+					Session.this.serializer = serializer;
+					if (!frames.isEmpty()) {
+						Frame frame = frames.get(frames.size() - 1);
+						// entries of maps are part of the property holding the map
+						if (frame.object == object) {
+							close(frame);
+							frame.path = frame.prefix == null ? name : frame.prefix + '.' + name;
+							frame.start = position();
+							frame.startNanos = System.nanoTime();
+						}
+					}
+					return true;
+				}
+			};
+			result[length - 1] = new AfterFilter() {
+				@Override
+				public void writeAfter(Object object) {
+					if (!frames.isEmpty()) {
+						close(frames.remove(frames.size() - 1));
+					}
+				}
+			};
+			return result;
+		}
+
+		private long position() {
+			return flushed + (serializer == null ? 0 : serializer.out.size());
+		}
+
+		private void close(Frame frame) {
+			if (frame.path == null) {
+				return;
+			}
+			long[] values = measurements.get(frame.path);
+			if (values == null) {
+				values = new long[3];
+				measurements.put(frame.path, values);
+			}
+			values[0]++;
+			values[1] += position() - frame.start;
+			values[2] += System.nanoTime() - frame.startNanos;
+			frame.path = null;
+		}
+
+		/**
+		 * Adds the measurements of the serialization to the profile of the action.
+		 */
+		public void finish() {
+			profile.record(measurements);
+		}
+
+	}
+
+	private static final class Frame {
+
+		final Object object;
+		final String prefix;
+		/** path of the property being written, null between properties */
+		String path;
+		long start;
+		long startNanos;
+
+		Frame(Object object, String prefix) {
+			this.object = object;
+			this.prefix = prefix;
+		}
+
+	}
+
+}
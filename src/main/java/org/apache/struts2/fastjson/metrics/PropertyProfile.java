@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Bytes and time attributed to one property path, exposed as composite data by the MXBean.
+ */
+public class PropertyProfile {
+
+	private final String path;
+	private final long count;
+	private final long bytes;
+	private final long micros;
+	private final long bytesPerSample;
+
+	@ConstructorProperties({ "path", "count", "bytes", "micros", "bytesPerSample" })
+	public PropertyProfile(String path, long count, long bytes, long micros, long bytesPerSample) {
+		this.path = path;
+		this.count = count;
+		this.bytes = bytes;
+		this.micros = micros;
+		this.bytesPerSample = bytesPerSample;
+	}
+
+	/**
+	 * @return dotted property path, elements of collections share the path of the collection
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return how often the property has been written
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return characters written for the property including its name and nested properties
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return time spent writing the property including nested properties
+	 */
+	public long getMicros() {
+		return micros;
+	}
+
+	/**
+	 * @return average characters per profiled response
+	 */
+	public long getBytesPerSample() {
+		return bytesPerSample;
+	}
+
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.struts2.fastjson.annotation.Deferred;
+
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.serializer.FieldSerializer;
+import com.alibaba.fastjson.serializer.JavaBeanSerializer;
+import com.alibaba.fastjson.serializer.ObjectSerializer;
+import com.alibaba.fastjson.serializer.PropertyPreFilter;
+import com.alibaba.fastjson.serializer.SerializeBeanInfo;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.alibaba.fastjson.serializer.SerializeFilter;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.serializer.ValueFilter;
+import com.alibaba.fastjson.util.FieldInfo;
+import com.alibaba.fastjson.util.TypeUtils;
+
+/**
+ * Resolves the deferred properties of a root object concurrently before it is
+ * serialized, so the latency of a response is the one of its slowest property
+ * instead of the sum of all of them.
+ * <p/>
+ * Deferred properties are
+ * <ul>
+ * <li>getters annotated with {@link Deferred}, invoked on the executor</li>
+ * <li><code>java.util.function.Supplier</code> values, whose <code>get()</code> is invoked on the executor</li>
+ * <li>{@link Future} values (including <code>CompletableFuture</code>), which are already running</li>
+ * </ul>
+ * Only the properties of the root object are resolved ahead, futures and suppliers
+ * found deeper in the graph are resolved while serializing. All of them share one
+ * deadline; a property not resolved in time fails the serialization.
+ * <p/>
+ * The results are written in place of the properties, by the field serializers
+ * of fastjson, so names, order, formats and features are the ones the property
+ * has without being deferred. Annotated getters are not invoked a second time
+ * while serializing, unless the root class has a serializer of its own.
+ */
+public class DeferredValues {
+
+	private static final Class<?> SUPPLIER_CLASS;
+	private static final Method SUPPLIER_GET;
+
+	static {
+		Class<?> supplierClass = null;
+		Method supplierGet = null;
+		try {
+			// Java 8 API, the plugin is compiled for Java 7
+			supplierClass = Class.forName("java.util.function.Supplier");
+			supplierGet = supplierClass.getMethod("get");
+		} catch (Exception e) {
+			supplierClass = null;
+		}
+		SUPPLIER_CLASS = supplierClass;
+		SUPPLIER_GET = supplierGet;
+	}
+
+	/** Getters without a field are not serialized at all, they are not resolved either */
+	private static final boolean IGNORE_NON_FIELD_GETTER = Arrays.asList(JSONSerializerUtils.getGenerateFeatures())
+			.contains(SerializerFeature.IgnoreNonFieldGetter);
+
+	private static final ClassValue<DeferredProperty[]> PROPERTIES = new ClassValue<DeferredProperty[]>() {
+		@Override
+		protected DeferredProperty[] computeValue(Class<?> type) {
+			List<DeferredProperty> properties = new ArrayList<DeferredProperty>();
+			// the properties as fastjson serializes them, named by @JSONField on the getter or its field
+			for (FieldInfo property : TypeUtils.computeGetters(type, null)) {
+				Method method = property.method;
+				if (method == null || (IGNORE_NON_FIELD_GETTER && property.field == null)) {
+					continue;
+				}
+				boolean annotated = method.isAnnotationPresent(Deferred.class);
+				boolean supplier = SUPPLIER_CLASS != null && SUPPLIER_CLASS.isAssignableFrom(method.getReturnType());
+				if (annotated || supplier) {
+					ReflectionUtils.makeAccessible(method);
+					properties.add(new DeferredProperty(property.name, method, annotated));
+				}
+			}
+			return properties.toArray(new DeferredProperty[properties.size()]);
+		}
+	};
+
+	private static final class DeferredProperty {
+
+		final String name;
+		final Method getter;
+		final boolean annotated;
+
+		DeferredProperty(String name, Method getter, boolean annotated) {
+			this.name = name;
+			this.getter = getter;
+			this.annotated = annotated;
+		}
+
+	}
+
+	private final Object root;
+	private final long deadline;
+	private final Map<String, Future<Object>> resolving;
+	private final Set<String> annotated;
+	private final Map<String, Object> resolved;
+
+	private DeferredValues(Object root, long deadline, Map<String, Future<Object>> resolving, Set<String> annotated) {
+		this.root = root;
+		this.deadline = deadline;
+		this.resolving = resolving;
+		this.annotated = annotated;
+		this.resolved = resolving == null ? null : new HashMap<String, Object>();
+	}
+
+	/**
+	 * Starts resolving the deferred properties of the root object.
+	 *
+	 * @param root the object to be serialized
+	 * @param filters the filters of the serialization, annotated getters they exclude are not invoked
+	 * @param executor executor running the getters and suppliers
+	 * @param timeout milliseconds until all deferred properties must be resolved
+	 * @return the pending values, {@link #cancel()} must be called once the serialization is over
+	 */
+	public static DeferredValues resolve(final Object root, SerializeFilter[] filters, ExecutorService executor, long timeout) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		DeferredProperty[] properties = root == null ? new DeferredProperty[0] : PROPERTIES.get(root.getClass());
+		if (properties.length == 0) {
+			return new DeferredValues(root, deadline, null, null);
+		}
+		Map<String, Future<Object>> resolving = new HashMap<String, Future<Object>>();
+		Set<String> annotated = new HashSet<String>();
+		for (final DeferredProperty property : properties) {
+			if (!isIncluded(filters, root, property.name)) {
+				continue;
+			}
+			resolving.put(property.name, executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					Object value = property.getter.invoke(root);
+					if (SUPPLIER_CLASS != null && SUPPLIER_CLASS.isInstance(value)) {
+						value = SUPPLIER_GET.invoke(value);
+					}
+					return value;
+				}
+			}));
+			if (property.annotated) {
+				annotated.add(property.name);
+			}
+		}
+		return new DeferredValues(root, deadline, resolving, annotated);
+	}
+
+	private static boolean isIncluded(SerializeFilter[] filters, Object root, String name) {
+		if (filters == null) {
+			return true;
+		}
+		for (SerializeFilter filter : filters) {
+			if (filter instanceof PropertyPreFilter) {
+				try {
+					if (!((PropertyPreFilter) filter).apply(null, root, name)) {
+						return false;
+					}
+				} catch (RuntimeException e) {
+					// the filter needs a serializer, let it decide while serializing
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param filters the filters of the serialization
+	 * @return the filters extended by the one replacing deferred values by their results
+	 */
+	public SerializeFilter[] addFilters(SerializeFilter[] filters) {
+		int length = filters == null ? 0 : filters.length;
+		SerializeFilter[] result = Arrays.copyOf(filters == null ? new SerializeFilter[0] : filters, length + 1);
+		result[length] = new Substitution();
+		return result;
+	}
+
+	/**
+	 * Replaces deferred values by their results, in place. It also provides
+	 * the serializer of the root class, whose annotated getters return their
+	 * results instead of being invoked again, see
+	 * {@link JSONSerializerUtils#serialize(Object, SerializeFilter[], String)}.
+	 */
+	final class Substitution implements ValueFilter {
+
+		private ObjectSerializer rootSerializer;
+
+		@Override
+		public Object process(Object object, String name, Object value) {
+			if (object == root && resolving != null && resolving.containsKey(name)) {
+				// already taken by the root serializer, and possibly turned into a string by the features since
+				return rootSerializer != null && annotated.contains(name) ? value : get(name);
+			}
+			return resolve(name, value);
+		}
+
+		/**
+		 * @param type the class of an object to be serialized
+		 * @param serializer the serializer configured for the class
+		 * @return the serializer to use
+		 */
+		ObjectSerializer getObjectWriter(Class<?> type, ObjectSerializer serializer) {
+			if (annotated == null || annotated.isEmpty() || type != root.getClass()
+					|| !(serializer instanceof JavaBeanSerializer)) {
+				return serializer;
+			}
+			if (rootSerializer == null) {
+				SerializeBeanInfo beanInfo = TypeUtils.buildBeanInfo(type, null,
+						SerializeConfig.getGlobalInstance().propertyNamingStrategy);
+				rootSerializer = new RootSerializer(type, beanInfo);
+			}
+			return rootSerializer;
+		}
+
+	}
+
+	/**
+	 * Serializer of the root class taking the results of the annotated getters
+	 * of the root object.
+	 */
+	private final class RootSerializer extends JavaBeanSerializer {
+
+		RootSerializer(Class<?> beanType, SerializeBeanInfo beanInfo) {
+			super(beanInfo);
+			replace(beanType, getters);
+			if (sortedGetters != getters) {
+				replace(beanType, sortedGetters);
+			}
+		}
+
+		private void replace(Class<?> beanType, FieldSerializer[] serializers) {
+			for (int i = 0; i < serializers.length; i++) {
+				if (annotated.contains(serializers[i].fieldInfo.name)) {
+					serializers[i] = new ResolvedFieldSerializer(beanType, serializers[i].fieldInfo);
+				}
+			}
+		}
+
+	}
+
+	private final class ResolvedFieldSerializer extends FieldSerializer {
+
+		ResolvedFieldSerializer(Class<?> beanType, FieldInfo fieldInfo) {
+			super(beanType, fieldInfo);
+		}
+
+		@Override
+		public Object getPropertyValueDirect(Object object) throws InvocationTargetException, IllegalAccessException {
+			return object == root && resolving.containsKey(fieldInfo.name) ? get(fieldInfo.name)
+					: super.getPropertyValueDirect(object);
+		}
+
+		@Override
+		public Object getPropertyValue(Object object) throws InvocationTargetException, IllegalAccessException {
+			return object == root && resolving.containsKey(fieldInfo.name) ? get(fieldInfo.name)
+					: super.getPropertyValue(object);
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object resolve(String name, Object value) {
+		if (value instanceof Future) {
+			return await(name, (Future<Object>) value);
+		}
+		if (SUPPLIER_CLASS != null && SUPPLIER_CLASS.isInstance(value)) {
+			return ReflectionUtils.invokeMethod(SUPPLIER_GET, value);
+		}
+		return value;
+	}
+
+	private Object await(String name, Future<Object> future) {
+		try {
+			long remaining = deadline - System.nanoTime();
+			return resolve(name, future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+		} catch (TimeoutException e) {
+			throw new JSONException("Deferred property '" + name + "' was not resolved in time", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JSONException("Interrupted while resolving deferred property '" + name + "'", e);
+		} catch (ExecutionException e) {
+			throw new JSONException("Could not resolve deferred property '" + name + "'", e.getCause());
+		}
+	}
+
+	/**
+	 * Waits for the deferred properties of the root object, the serialization
+	 * then takes their values without blocking. Future and Supplier values met
+	 * below the root are still resolved while serializing.
+	 *
+	 * @throws JSONException if a property fails or is not resolved in time
+	 */
+	public void awaitAll() {
+		if (resolving != null) {
+			for (Map.Entry<String, Future<Object>> entry : resolving.entrySet()) {
+				resolved.put(entry.getKey(), await(entry.getKey(), entry.getValue()));
+			}
+		}
+	}
+
+	private Object get(String name) {
+		if (resolved.containsKey(name)) {
+			return resolved.get(name);
+		}
+		return await(name, resolving.get(name));
+	}
+
+	/**
+	 * Cancels the getters and suppliers still running, for instance after a failure.
+	 */
+	public void cancel() {
+		if (resolving != null) {
+			for (Future<Object> future : resolving.values()) {
+				future.cancel(true);
+			}
+		}
+	}
+
+}
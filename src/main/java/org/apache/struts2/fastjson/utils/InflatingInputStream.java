@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates <code>gzip</code> and <code>deflate</code> request bodies while they
+ * are read. {@link Inflater}s are pooled, as each one holds native memory that
+ * is otherwise only freed by the finalizer; the gzip header and trailer are
+ * therefore parsed here instead of by <code>GZIPInputStream</code>, which
+ * cannot use a given inflater.
+ * <p/>
+ * Against compression bombs the stream fails with a {@link LimitExceededException}
+ * once the inflated content exceeds a maximum size, or once its ratio to the
+ * compressed bytes read exceeds a maximum. Instances are not thread safe and
+ * return their inflater to the pool when closed.
+ */
+public class InflatingInputStream extends InputStream {
+
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
+
+	private static final int POOL_SIZE = 32;
+	private static final int BUFFER_SIZE = 8192;
+	/** inflated bytes below which the ratio is not checked, small bodies compress well */
+	private static final long RATIO_THRESHOLD = 64 * 1024;
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private static final BlockingQueue<Inflater> RAW = new ArrayBlockingQueue<Inflater>(POOL_SIZE);
+	private static final BlockingQueue<Inflater> ZLIB = new ArrayBlockingQueue<Inflater>(POOL_SIZE);
+
+	private final PushbackInputStream in;
+	private final boolean gzip;
+	private final boolean nowrap;
+	private final long maxSize;
+	private final int maxRatio;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final CRC32 crc;
+
+	private Inflater inflater;
+	private int filled;
+	private long size;
+	private boolean eof;
+
+	private InflatingInputStream(PushbackInputStream in, boolean gzip, boolean nowrap, long maxSize, int maxRatio) {
+		this.in = in;
+		this.gzip = gzip;
+		this.nowrap = nowrap;
+		this.maxSize = maxSize;
+		this.maxRatio = maxRatio;
+		this.crc = gzip ? new CRC32() : null;
+		this.inflater = borrow(nowrap);
+	}
+
+	/**
+	 * @param contentEncoding the <code>Content-Encoding</code> of a request
+	 * @return true if it can be inflated
+	 */
+	public static boolean isSupported(String contentEncoding) {
+		return GZIP.equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)
+				|| DEFLATE.equalsIgnoreCase(contentEncoding);
+	}
+
+	/**
+	 * @param in the compressed body
+	 * @param contentEncoding <code>gzip</code> or <code>deflate</code>, see {@link #isSupported(String)}
+	 * @param maxSize maximum number of inflated bytes, 0 or less for no limit
+	 * @param maxRatio maximum ratio of inflated to compressed bytes, 0 or less for no limit
+	 * @return a stream of the inflated content
+	 * @throws IOException if the gzip header cannot be read
+	 */
+	public static InputStream open(InputStream in, String contentEncoding, long maxSize, int maxRatio) throws IOException {
+		// input left over by the inflater is pushed back before the gzip trailer is read
+		PushbackInputStream source = new PushbackInputStream(in, BUFFER_SIZE);
+		if (DEFLATE.equalsIgnoreCase(contentEncoding)) {
+			// "deflate" should be zlib wrapped, yet some clients send raw deflate data
+			int b0 = source.read();
+			int b1 = b0 < 0 ? -1 : source.read();
+			if (b1 >= 0) {
+				source.unread(b1);
+			}
+			if (b0 >= 0) {
+				source.unread(b0);
+			}
+			boolean zlib = b1 >= 0 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0;
+			return new InflatingInputStream(source, false, !zlib, maxSize, maxRatio);
+		}
+		readHeader(source);
+		return new InflatingInputStream(source, true, true, maxSize, maxRatio);
+	}
+
+	private static Inflater borrow(boolean nowrap) {
+		Inflater inflater = (nowrap ? RAW : ZLIB).poll();
+		return inflater != null ? inflater : new Inflater(nowrap);
+	}
+
+	private static void release(Inflater inflater, boolean nowrap) {
+		inflater.reset();
+		if (!(nowrap ? RAW : ZLIB).offer(inflater)) {
+			inflater.end();
+		}
+	}
+
+	private static void readHeader(InputStream in) throws IOException {
+		CRC32 crc = new CRC32();
+		if (readUShort(in, crc) != 0x8b1f) {
+			throw new ZipException("Not in GZIP format");
+		}
+		if (readUByte(in, crc) != 8) {
+			throw new ZipException("Unsupported compression method");
+		}
+		int flags = readUByte(in, crc);
+		// modification time, extra flags and operating system
+		for (int i = 0; i < 6; i++) {
+			readUByte(in, crc);
+		}
+		if ((flags & FEXTRA) != 0) {
+			for (int length = readUShort(in, crc); length > 0; length--) {
+				readUByte(in, crc);
+			}
+		}
+		if ((flags & FNAME) != 0) {
+			while (readUByte(in, crc) != 0) {
+				// skip the file name
+			}
+		}
+		if ((flags & FCOMMENT) != 0) {
+			while (readUByte(in, crc) != 0) {
+				// skip the comment
+			}
+		}
+		if ((flags & FHCRC) != 0) {
+			int expected = (int) crc.getValue() & 0xFFFF;
+			if (readUShort(in, null) != expected) {
+				throw new ZipException("Corrupt GZIP header");
+			}
+		}
+	}
+
+	private static int readUByte(InputStream in, CRC32 crc) throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("Unexpected end of GZIP stream");
+		}
+		if (crc != null) {
+			crc.update(b);
+		}
+		return b;
+	}
+
+	private static int readUShort(InputStream in, CRC32 crc) throws IOException {
+		int low = readUByte(in, crc);
+		return (readUByte(in, crc) << 8) | low;
+	}
+
+	private static long readUInt(InputStream in) throws IOException {
+		long low = readUShort(in, null);
+		return ((long) readUShort(in, null) << 16) | low;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (inflater == null) {
+			throw new IOException("Stream closed");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		while (!eof) {
+			int n;
+			try {
+				n = inflater.inflate(b, off, len);
+			} catch (DataFormatException e) {
+				throw new ZipException(e.getMessage());
+			}
+			if (n > 0) {
+				count(n);
+				if (crc != null) {
+					crc.update(b, off, n);
+				}
+				return n;
+			}
+			if (inflater.finished()) {
+				finish();
+			} else if (inflater.needsDictionary()) {
+				throw new ZipException("Deflate dictionaries are not supported");
+			} else if (inflater.needsInput()) {
+				int read = in.read(buffer, 0, buffer.length);
+				if (read < 0) {
+					throw new EOFException("Unexpected end of compressed request body");
+				}
+				inflater.setInput(buffer, 0, read);
+				filled = read;
+			}
+		}
+		return -1;
+	}
+
+	private void count(int n) throws LimitExceededException {
+		size += n;
+		if (maxSize > 0 && size > maxSize) {
+			throw new LimitExceededException("inflated request body exceeds " + maxSize + " bytes");
+		}
+		if (maxRatio > 0 && size > RATIO_THRESHOLD && size > inflater.getBytesRead() * maxRatio) {
+			throw new LimitExceededException("compression ratio of the request body exceeds " + maxRatio);
+		}
+	}
+
+	/**
+	 * Checks the gzip trailer; what follows the compressed data, such as further
+	 * gzip members, is ignored.
+	 */
+	private void finish() throws IOException {
+		eof = true;
+		int remaining = inflater.getRemaining();
+		if (remaining > 0) {
+			in.unread(buffer, filled - remaining, remaining);
+		}
+		if (gzip) {
+			if (readUInt(in) != crc.getValue()) {
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+			if (readUInt(in) != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+		}
+	}
+
+	/**
+	 * Returns the inflater to the pool, the underlying stream is closed too.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (inflater != null) {
+			release(inflater, nowrap);
+			inflater = null;
+		}
+		in.close();
+	}
+
+	/**
+	 * Thrown when an inflated request body exceeds its limits.
+	 */
+	@SuppressWarnings("serial")
+	public static class LimitExceededException extends IOException {
+
+		public LimitExceededException(String message) {
+			super(message);
+		}
+
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * Bulkhead for heavy serializations: at most a fixed number of them run at the
+ * same time, so a few large exports cannot take all threads and cores from the
+ * small responses. The number of permits is configured with the constant
+ * <code>struts.fastjson.bulkhead.permits</code>, defaulting to the number of processors.
+ * <p/>
+ * Results are classified as heavy by configuration or by the learned size of
+ * their responses: an exponentially weighted moving average of the bytes
+ * written is kept per action, for at most {@value #MAX_ESTIMATES} actions.
+ */
+public class JSONBulkhead {
+
+	/** weight of the latest response in the moving average, in percent */
+	private static final int WEIGHT = 20;
+
+	/** actions whose sizes are learned, later ones are not classified by size */
+	public static final int MAX_ESTIMATES = 10000;
+
+	private static volatile Semaphore permits = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+	private static final ConcurrentMap<String, AtomicLong> ESTIMATES = new ConcurrentHashMap<String, AtomicLong>();
+	private static final AtomicLong REJECTED = new AtomicLong();
+
+	@Inject(value = "struts.fastjson.bulkhead.permits", required = false)
+	public static void setPermits(String permits) {
+		int count = Integer.parseInt(permits.trim());
+		JSONBulkhead.permits = new Semaphore(count > 0 ? count : Runtime.getRuntime().availableProcessors(), true);
+	}
+
+	/**
+	 * Waits for a permit.
+	 *
+	 * @param timeout milliseconds to wait, 0 or less fails at once if none is available
+	 * @return the semaphore to release the permit to, null if none has been acquired in time
+	 */
+	public static Semaphore acquire(long timeout) {
+		Semaphore semaphore = permits;
+		boolean acquired;
+		try {
+			acquired = timeout > 0 ? semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS) : semaphore.tryAcquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+		if (!acquired) {
+			REJECTED.incrementAndGet();
+			return null;
+		}
+		return semaphore;
+	}
+
+	/**
+	 * @return permits currently available
+	 */
+	public static int getAvailablePermits() {
+		return permits.availablePermits();
+	}
+
+	/**
+	 * @return number of heavy results rejected in this JVM
+	 */
+	public static long getRejectedCount() {
+		return REJECTED.get();
+	}
+
+	/**
+	 * @param key identifies the action
+	 * @return estimated response size in bytes, -1 if nothing has been recorded yet
+	 */
+	public static long getEstimate(String key) {
+		AtomicLong estimate = ESTIMATES.get(key);
+		return estimate == null ? -1 : estimate.get();
+	}
+
+	/**
+	 * Adds the size of a response to the moving average of the action.
+	 *
+	 * @param key identifies the action
+	 * @param bytes size of the response
+	 */
+	public static void record(String key, long bytes) {
+		AtomicLong estimate = ESTIMATES.get(key);
+		if (estimate == null) {
+			if (ESTIMATES.size() >= MAX_ESTIMATES) {
+				return;
+			}
+			AtomicLong existing = ESTIMATES.putIfAbsent(key, estimate = new AtomicLong(bytes));
+			if (existing == null) {
+				return;
+			}
+			estimate = existing;
+		}
+		for (;;) {
+			long current = estimate.get();
+			long next = current + (bytes - current) * WEIGHT / 100;
+			if (estimate.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+}
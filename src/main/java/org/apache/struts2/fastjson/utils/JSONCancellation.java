@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.PropertyPreFilter;
+
+/**
+ * Cancellation token of one result execution. It is raised when the deadline of
+ * the result has passed or when the response can no longer be delivered, for
+ * instance because the client went away. The {@link #getFilter() filter} checks
+ * the token for every property written, so a cancelled serialization stops in
+ * the middle of the object graph instead of running to its end.
+ */
+public class JSONCancellation {
+
+	private static final AtomicLong ABORTS = new AtomicLong();
+
+	/** checking the clock for every property would cost more than it saves */
+	private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+	private final long deadline;
+	private volatile String reason;
+	/** shared by the chunks of a parallel serialization */
+	private final AtomicInteger checks = new AtomicInteger();
+
+	/**
+	 * @param timeout milliseconds the result may take, 0 or less for no deadline
+	 */
+	public JSONCancellation(long timeout) {
+		this.deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+	}
+
+	/**
+	 * @return number of serializations aborted in this JVM
+	 */
+	public static long getAbortCount() {
+		return ABORTS.get();
+	}
+
+	/**
+	 * Counts an aborted serialization.
+	 */
+	public static void aborted() {
+		ABORTS.incrementAndGet();
+	}
+
+	/**
+	 * Raises the token, the serialization stops at the next property.
+	 *
+	 * @param reason why the result is cancelled
+	 */
+	public void cancel(String reason) {
+		if (this.reason == null) {
+			this.reason = reason;
+		}
+	}
+
+	/**
+	 * @return true if the token has been raised or the deadline has passed
+	 */
+	public boolean isCancelled() {
+		if (reason == null && deadline != 0 && System.nanoTime() - deadline > 0) {
+			cancel("deadline exceeded");
+		}
+		return reason != null;
+	}
+
+	/**
+	 * @return true if the result has been cancelled because of its deadline
+	 */
+	public boolean isExpired() {
+		return deadline != 0 && System.nanoTime() - deadline > 0;
+	}
+
+	/**
+	 * @return why the result has been cancelled, null if it is not
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * @throws CancelledException if the result has been cancelled
+	 */
+	public void check() throws CancelledException {
+		if (isCancelled()) {
+			throw new CancelledException(reason);
+		}
+	}
+
+	/**
+	 * @return a filter aborting the serialization once the token is raised, it
+	 *         never excludes a property
+	 */
+	public PropertyPreFilter getFilter() {
+		return new PropertyPreFilter() {
+			@Override
+			public boolean apply(JSONSerializer serializer, Object object, String name) {
+				if (reason != null || (deadline != 0 && checks.incrementAndGet() % DEADLINE_CHECK_INTERVAL == 0)) {
+					check();
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @param throwable an exception thrown while serializing
+	 * @return true if it has been caused by a cancellation
+	 */
+	public static boolean isCancellation(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof CancelledException) {
+				return true;
+			}
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Thrown by a cancelled serialization, fastjson may wrap it into another
+	 * {@link JSONException}, see {@link JSONCancellation#isCancellation(Throwable)}.
+	 */
+	@SuppressWarnings("serial")
+	public static class CancelledException extends JSONException {
+
+		public CancelledException(String message) {
+			super("JSON result cancelled: " + message);
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * Holds the executor the plugin runs its background work on, such as
+ * asynchronous results and deferred properties.
+ * <p/>
+ * The executor is chosen by the constant <code>struts.fastjson.executor</code>:
+ * <ul>
+ * <li><code>virtual</code> (the default) - one virtual thread per task on Java 21
+ * and later, a cached pool of daemon threads on older JVMs</li>
+ * <li><code>cached</code> - a cached pool of daemon threads</li>
+ * <li>a number - a fixed pool with that many daemon threads</li>
+ * </ul>
+ * Applications may also install their own executor with {@link #setExecutor(ExecutorService)},
+ * it is left running when the dispatcher is destroyed; an executor created by
+ * the plugin is shut down then.
+ */
+public class JSONExecutors {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JSONExecutors.class);
+
+	public static final String VIRTUAL = "virtual";
+	public static final String CACHED = "cached";
+
+	private static volatile String executorType = VIRTUAL;
+	private static volatile ExecutorService executor;
+	/** Created by {@link #getExecutor()}, shut down with the dispatcher */
+	private static ExecutorService created;
+
+	/**
+	 * @return the shared executor, created on first use
+	 */
+	public static ExecutorService getExecutor() {
+		ExecutorService result = executor;
+		if (result == null) {
+			synchronized (JSONExecutors.class) {
+				result = executor;
+				if (result == null) {
+					result = newExecutor(executorType);
+					executor = result;
+					created = result;
+					JSONShutdown.register(new Runnable() {
+						@Override
+						public void run() {
+							shutdownCreated();
+						}
+
+						@Override
+						public String toString() {
+							return "the fastjson executor";
+						}
+					});
+				}
+			}
+		}
+		return result;
+	}
+
+	private static synchronized void shutdownCreated() {
+		if (created != null) {
+			created.shutdownNow();
+			if (executor == created) {
+				executor = null;
+			}
+			created = null;
+		}
+	}
+
+	/**
+	 * Replaces the shared executor, the previous one is not shut down.
+	 *
+	 * @param executor the executor to use from now on
+	 */
+	public static void setExecutor(ExecutorService executor) {
+		JSONExecutors.executor = executor;
+	}
+
+	@Inject(value = "struts.fastjson.executor", required = false)
+	public static void setExecutorType(String executorType) {
+		JSONExecutors.executorType = executorType.trim();
+	}
+
+	/**
+	 * @param type <code>virtual</code>, <code>cached</code> or the number of threads
+	 * @return a new executor of the given type
+	 */
+	public static ExecutorService newExecutor(String type) {
+		if (VIRTUAL.equalsIgnoreCase(type)) {
+			ExecutorService virtual = newVirtualThreadExecutor();
+			if (virtual != null) {
+				return virtual;
+			}
+			return Executors.newCachedThreadPool(new DaemonThreadFactory());
+		}
+		if (CACHED.equalsIgnoreCase(type)) {
+			return Executors.newCachedThreadPool(new DaemonThreadFactory());
+		}
+		return Executors.newFixedThreadPool(Integer.parseInt(type), new DaemonThreadFactory());
+	}
+
+	/**
+	 * Looked up reflectively, the plugin is compiled for Java 7.
+	 *
+	 * @return a virtual-thread-per-task executor, null before Java 21
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (Exception e) {
+			LOG.debug("Virtual threads are not available", e);
+			return null;
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "fastjson-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.serializer.AfterFilter;
+import com.alibaba.fastjson.serializer.BeforeFilter;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.PropertyPreFilter;
+import com.alibaba.fastjson.serializer.SerializeFilter;
+import com.alibaba.fastjson.serializer.ValueFilter;
+
+/**
+ * Output budget of one serialization, guarding against actions returning huge
+ * object graphs:
+ * <ul>
+ * <li>maxDepth - nesting of JavaBeans, tracked incrementally when entering and
+ * leaving a bean instead of walking the serial context for every property</li>
+ * <li>maxNodes - properties and collection elements written</li>
+ * <li>maxCollectionItems - elements of a single collection or array</li>
+ * </ul>
+ * Exceeding a limit either fails with a {@link LimitExceededException} or, in
+ * truncate mode, cuts the output and leaves a <code>"$truncated"</code> marker:
+ * truncated beans get a <code>"$truncated":true</code> property, truncated
+ * collections end with a <code>{"$truncated":omitted}</code> element.
+ * <p/>
+ * Instances keep the state of one serialization on one thread and must not be shared.
+ */
+public class JSONOutputLimits {
+
+	public static final String TRUNCATED = "$truncated";
+
+	private final int maxDepth;
+	private final long maxNodes;
+	private final int maxCollectionItems;
+	private final boolean truncate;
+
+	private int depth;
+	private long nodes;
+
+	/**
+	 * @param maxDepth maximum nesting of beans, 0 or less for no limit
+	 * @param maxNodes maximum number of properties and elements, 0 or less for no limit
+	 * @param maxCollectionItems maximum elements of a collection, 0 or less for no limit
+	 * @param truncate whether exceeded limits truncate the output instead of failing
+	 */
+	public JSONOutputLimits(int maxDepth, long maxNodes, int maxCollectionItems, boolean truncate) {
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+		this.maxCollectionItems = maxCollectionItems;
+		this.truncate = truncate;
+	}
+
+	/**
+	 * @return true if any limit is set
+	 */
+	public boolean isEnabled() {
+		return maxDepth > 0 || maxNodes > 0 || maxCollectionItems > 0;
+	}
+
+	/**
+	 * @param filters the filters of the serialization
+	 * @return the filters extended by the ones enforcing the limits, they come
+	 *         last so properties excluded by other filters are not counted
+	 */
+	public SerializeFilter[] addFilters(SerializeFilter[] filters) {
+		List<SerializeFilter> result = new ArrayList<SerializeFilter>();
+		if (filters != null) {
+			result.addAll(Arrays.asList(filters));
+		}
+		if (maxDepth > 0 || maxNodes > 0) {
+			result.add(new BeforeFilter() {
+				@Override
+				public void writeBefore(Object object) {
+					depth++;
+					if (maxDepth > 0 && depth > maxDepth) {
+						if (!truncate) {
+							throw new LimitExceededException("maximum depth of " + maxDepth + " exceeded");
+						}
+						writeKeyValue(TRUNCATED, Boolean.TRUE);
+					}
+				}
+			});
+			result.add(new AfterFilter() {
+				@Override
+				public void writeAfter(Object object) {
+					// every bean still open when the node budget ran out has lost properties
+					if (maxNodes > 0 && nodes > maxNodes && (maxDepth <= 0 || depth <= maxDepth)) {
+						writeKeyValue(TRUNCATED, Boolean.TRUE);
+					}
+					depth--;
+				}
+			});
+			result.add(new PropertyPreFilter() {
+				@Override
+				public boolean apply(JSONSerializer serializer, Object object, String name) {
+					if (maxDepth > 0 && depth > maxDepth) {
+						return false;
+					}
+					return countNodes(1);
+				}
+			});
+		}
+		if (maxCollectionItems > 0 || maxNodes > 0) {
+			result.add(new ValueFilter() {
+				@Override
+				public Object process(Object object, String name, Object value) {
+					return limitCollection(value);
+				}
+			});
+		}
+		return result.toArray(new SerializeFilter[result.size()]);
+	}
+
+	/**
+	 * Applies the collection limits to the root object, its elements are not
+	 * seen by the property filters.
+	 *
+	 * @param root the object to be serialized
+	 * @return the root object or its truncated copy
+	 */
+	public Object limitRoot(Object root) {
+		return limitCollection(root);
+	}
+
+	private boolean countNodes(long count) {
+		if (maxNodes <= 0) {
+			return true;
+		}
+		nodes += count;
+		if (nodes <= maxNodes) {
+			return true;
+		}
+		if (!truncate) {
+			throw new LimitExceededException("maximum of " + maxNodes + " nodes exceeded");
+		}
+		return false;
+	}
+
+	private Object limitCollection(Object value) {
+		int size = JSONSerializerUtils.sizeOf(value);
+		if (size < 0 && value != null && value.getClass().isArray()) {
+			size = Array.getLength(value);
+		}
+		if (size <= 0) {
+			return value;
+		}
+		int limit = maxCollectionItems > 0 ? maxCollectionItems : Integer.MAX_VALUE;
+		if (size > limit && !truncate) {
+			throw new LimitExceededException("collection of " + size + " elements exceeds the maximum of "
+					+ maxCollectionItems);
+		}
+		if (maxNodes > 0) {
+			// in truncate mode a collection gets what is left of the node budget
+			limit = (int) Math.min(limit, Math.max(0, maxNodes - nodes));
+			countNodes(Math.min(size, limit + 1L));
+		}
+		if (size <= limit) {
+			return value;
+		}
+		List<Object> truncated = new ArrayList<Object>(limit + 1);
+		if (value instanceof Collection) {
+			Iterator<?> it = ((Collection<?>) value).iterator();
+			for (int i = 0; i < limit; i++) {
+				truncated.add(it.next());
+			}
+		} else {
+			for (int i = 0; i < limit; i++) {
+				truncated.add(Array.get(value, i));
+			}
+		}
+		truncated.add(Collections.singletonMap(TRUNCATED, size - limit));
+		return truncated;
+	}
+
+	/**
+	 * @param out the stream receiving the encoded JSON, before any compression
+	 * @param maxBytes maximum number of bytes written
+	 * @return a stream failing with a {@link LimitExceededException} once the limit is exceeded
+	 */
+	public static OutputStream limit(OutputStream out, final long maxBytes) {
+		return new FilterOutputStream(out) {
+
+			private long count;
+
+			private void count(long bytes) {
+				count += bytes;
+				if (count > maxBytes) {
+					throw new LimitExceededException("maximum of " + maxBytes + " bytes exceeded");
+				}
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				count(1);
+				out.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				count(len);
+				out.write(b, off, len);
+			}
+
+		};
+	}
+
+	/**
+	 * @param throwable an exception thrown while serializing
+	 * @return true if it has been caused by an exceeded limit
+	 */
+	public static boolean isLimitExceeded(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof LimitExceededException) {
+				return true;
+			}
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Thrown when the output exceeds a limit, fastjson may wrap it into another
+	 * {@link JSONException}, see {@link JSONOutputLimits#isLimitExceeded(Throwable)}.
+	 */
+	@SuppressWarnings("serial")
+	public static class LimitExceededException extends JSONException {
+
+		public LimitExceededException(String message) {
+			super("JSON output limit: " + message);
+		}
+
+	}
+
+}
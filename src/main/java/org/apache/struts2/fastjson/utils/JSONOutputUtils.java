@@ -15,15 +15,20 @@
  */
 package org.apache.struts2.fastjson.utils;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
 
@@ -45,25 +50,132 @@ public class JSONOutputUtils {
 	private static final Logger LOG = LoggerFactory.getLogger(JSONOutputUtils.class);
 
 	public static void writeJSONToResponse(SerializationParams serializationParams) throws IOException {
-        StringBuilder stringBuilder = new StringBuilder();
-        if (StringUtils.isNotBlank(serializationParams.getSerialized())){
-            stringBuilder.append(serializationParams.getSerialized());
+        String json = wrap(serializationParams);
+
+        LOG.debug("[JSON] {}", json);
+
+        HttpServletResponse response = serializationParams.getResponse();
+
+        // status or error code
+        if (serializationParams.getStatusCode() > 0){
+            response.setStatus(serializationParams.getStatusCode());
+        } else if (serializationParams.getErrorCode() > 0){
+            response.sendError(serializationParams.getErrorCode());
+        }
+        // content type
+        response.setContentType(serializationParams.getContentType() + ";charset=" + serializationParams.getEncoding());
+
+        if (serializationParams.isNoCache()) {
+            response.setHeader("Cache-Control", "no-cache");
+            response.setHeader("Expires", "0");
+            response.setHeader("Pragma", "No-cache");
+        }
+
+        // encoded once, the bytes are written as they are
+        byte[] bytes = json.getBytes(serializationParams.getEncoding());
+        if (serializationParams.isGzip()) {
+            response.addHeader("Content-Encoding", "gzip");
+            GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 8192);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+        } else {
+            response.setContentLength(bytes.length);
+            OutputStream out = response.getOutputStream();
+            out.write(bytes);
+            out.flush();
         }
+    }
+
+    /**
+     * @return the serialized JSON with the configured wrappers, the serialized
+     *         String itself if there is nothing to add
+     */
+    private static String wrap(SerializationParams serializationParams) {
+        String serialized = StringUtils.isNotBlank(serializationParams.getSerialized()) ? serializationParams.getSerialized() : "";
+        String start = "";
+        String end = "";
         if (StringUtils.isNotBlank(serializationParams.getWrapPrefix())){
-            stringBuilder.insert(0, serializationParams.getWrapPrefix());
+            start = serializationParams.getWrapPrefix();
         } else if (serializationParams.isWrapWithComments()) {
-            stringBuilder.insert(0, "/* ");
-            stringBuilder.append(" */");
+            start = "/* ";
+            end = " */";
         } else if (serializationParams.isPrefix()){
-            stringBuilder.insert(0, "{}&& ");
+            start = "{}&& ";
         }
         if (StringUtils.isNotBlank(serializationParams.getWrapSuffix())){
-            stringBuilder.append(serializationParams.getWrapSuffix());
+            end = end + serializationParams.getWrapSuffix();
         }
-        String json = stringBuilder.toString();
+        if (start.length() == 0 && end.length() == 0) {
+            return serialized;
+        }
+        return new StringBuilder(start.length() + serialized.length() + end.length())
+        		.append(start).append(serialized).append(end).toString();
+    }
 
-        LOG.debug("[JSON] {}", json);
+    /**
+     * Writes the text preceding the JSON, the counterpart of {@link #writeWrapperEnd(Writer, SerializationParams)}.
+     *
+     * @param writer the writer receiving the response text
+     * @param serializationParams the wrapping options, {@link SerializationParams#getSerialized()} is ignored
+     * @throws IOException in case of IO errors
+     */
+    public static void writeWrapperStart(Writer writer, SerializationParams serializationParams) throws IOException {
+        if (StringUtils.isNotBlank(serializationParams.getWrapPrefix())){
+            writer.write(serializationParams.getWrapPrefix());
+        } else if (serializationParams.isWrapWithComments()) {
+            writer.write("/* ");
+        } else if (serializationParams.isPrefix()){
+            writer.write("{}&& ");
+        }
+    }
 
+    /**
+     * Writes the text following the JSON, the counterpart of {@link #writeWrapperStart(Writer, SerializationParams)}.
+     *
+     * @param writer the writer receiving the response text
+     * @param serializationParams the wrapping options, {@link SerializationParams#getSerialized()} is ignored
+     * @throws IOException in case of IO errors
+     */
+    public static void writeWrapperEnd(Writer writer, SerializationParams serializationParams) throws IOException {
+        if (StringUtils.isBlank(serializationParams.getWrapPrefix()) && serializationParams.isWrapWithComments()) {
+            writer.write(" */");
+        }
+        if (StringUtils.isNotBlank(serializationParams.getWrapSuffix())){
+            writer.write(serializationParams.getWrapSuffix());
+        }
+    }
+
+    /**
+     * Sends an already encoded (and possibly compressed) response body. Unlike
+     * {@link #writeJSONToResponse(SerializationParams)} the body is not held as a
+     * String, the Content-Length and the optional ETag are taken from the buffer.
+     *
+     * @param serializationParams the response options, {@link SerializationParams#getSerialized()} is ignored
+     * @param body the complete response body
+     * @param ifNoneMatch value of the If-None-Match request header, may be null
+     * @throws IOException in case of IO errors
+     */
+    public static void writeJSONToResponse(SerializationParams serializationParams, SpillableOutputStream body,
+            String ifNoneMatch) throws IOException {
+        if (prepareResponse(serializationParams, body, ifNoneMatch)) {
+            body.writeTo(serializationParams.getResponse().getOutputStream());
+        }
+    }
+
+    /**
+     * Sets status and headers of a response whose body is buffered in <code>body</code>.
+     *
+     * @param serializationParams the response options, {@link SerializationParams#getSerialized()} is ignored
+     * @param body the complete response body
+     * @param ifNoneMatch value of the If-None-Match request header, may be null
+     * @return false if the body must not be sent (304 Not Modified)
+     * @throws IOException in case of IO errors
+     */
+    public static boolean prepareResponse(SerializationParams serializationParams, SpillableOutputStream body,
+            String ifNoneMatch) throws IOException {
         HttpServletResponse response = serializationParams.getResponse();
 
         // status or error code
@@ -81,31 +193,48 @@ public class JSONOutputUtils {
             response.setHeader("Pragma", "No-cache");
         }
 
-        if (serializationParams.isGzip()) {
-            response.addHeader("Content-Encoding", "gzip");
-            GZIPOutputStream out = null;
-            InputStream in = null;
-            try {
-                out = new GZIPOutputStream(response.getOutputStream());
-                in = new ByteArrayInputStream(json.getBytes(serializationParams.getEncoding()));
-                byte[] buf = new byte[1024];
-                int len;
-                while ((len = in.read(buf)) > 0) {
-                    out.write(buf, 0, len);
-                }
-            } finally {
-                if (in != null)
-                    in.close();
-                if (out != null) {
-                    out.finish();
-                    out.close();
-                }
+        String etag = body.getETag();
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+            if (etag.equals(ifNoneMatch) && serializationParams.getStatusCode() <= 0
+                    && serializationParams.getErrorCode() <= 0) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return false;
             }
+        }
 
+        if (serializationParams.isGzip()) {
+            response.addHeader("Content-Encoding", "gzip");
+        }
+        if (body.size() <= Integer.MAX_VALUE) {
+            response.setContentLength((int) body.size());
         } else {
-            response.setContentLength(json.getBytes(serializationParams.getEncoding()).length);
-            PrintWriter out = response.getWriter();
-            out.print(json);
+            response.setHeader("Content-Length", String.valueOf(body.size()));
+        }
+        return true;
+    }
+
+    /**
+     * Copies <code>count</code> bytes of the given channel, starting at <code>position</code>,
+     * to the output stream with {@link FileChannel#transferTo}, so the content never
+     * passes through a heap buffer of this plugin.
+     *
+     * @param channel the file to read from
+     * @param position offset of the first byte to copy
+     * @param count number of bytes to copy
+     * @param out the destination, typically the servlet output stream
+     * @throws IOException in case of IO errors
+     */
+    public static void transferTo(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        // the servlet stream must stay open, so the wrapping channel is never closed
+        WritableByteChannel target = Channels.newChannel(out);
+        long end = position + count;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += transferred;
         }
     }
 
@@ -159,6 +288,47 @@ public class JSONOutputUtils {
         return processIncludePatterns(includePatterns, type, defaultIncludePatternData);
     }
 
+    /** upper bound of cached pattern lists, parameters evaluated per request may produce any number of them */
+    private static final int MAX_CACHED_PATTERNS = 1024;
+    private static final ConcurrentMap<String, List<Pattern>> PATTERN_CACHE = new ConcurrentHashMap<String, List<Pattern>>();
+
+    /**
+     * Compiles the patterns of a result parameter once, results are created for
+     * every request and would otherwise compile them again each time.
+     *
+     * @param commaDelim a comma-delimited list of patterns
+     * @param type {@link #REGEXP_PATTERN} or {@link #WILDCARD_PATTERN}
+     * @param include whether the patterns include properties, which adds a pattern for every level of their hierarchy
+     * @return an unmodifiable list shared by all callers, null if there are no patterns
+     */
+    public static List<Pattern> compilePatterns(String commaDelim, String type, boolean include) {
+        if (commaDelim == null) {
+            return null;
+        }
+        String key = (include ? "include:" : "exclude:") + type + ':' + commaDelim;
+        List<Pattern> patterns = PATTERN_CACHE.get(key);
+        if (patterns == null) {
+            Set<String> expressions = asSet(commaDelim);
+            if (expressions == null) {
+                return null;
+            }
+            if (include) {
+                patterns = processIncludePatterns(expressions, type);
+            } else {
+                patterns = new ArrayList<Pattern>(expressions.size());
+                for (String expression : expressions) {
+                    patterns.add(REGEXP_PATTERN.equals(type) ? Pattern.compile(expression)
+                            : WildcardUtil.compileWildcardPattern(expression));
+                }
+            }
+            patterns = Collections.unmodifiableList(patterns);
+            if (PATTERN_CACHE.size() < MAX_CACHED_PATTERNS) {
+                PATTERN_CACHE.putIfAbsent(key, patterns);
+            }
+        }
+        return patterns;
+    }
+
     /* package */ static List<Pattern> processIncludePatterns(Set<String> includePatterns, String type, Map<String, Map<String, String>> includePatternData) {
         if (includePatterns != null) {
             List<Pattern> results = new ArrayList<Pattern>(includePatterns.size());
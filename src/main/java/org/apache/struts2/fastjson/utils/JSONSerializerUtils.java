@@ -15,29 +15,77 @@
  */
 package org.apache.struts2.fastjson.utils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.apache.struts2.fastjson.annotation.ExcludeFilter;
 import org.apache.struts2.fastjson.annotation.IncludeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.alibaba.fastjson.parser.DefaultJSONParser;
+import com.alibaba.fastjson.parser.JSONReaderScanner;
+import com.alibaba.fastjson.parser.JSONToken;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.parser.deserializer.ObjectDeserializer;
+import com.alibaba.fastjson.serializer.JSONSerializer;
 import com.alibaba.fastjson.serializer.NullPropertyFilter;
+import com.alibaba.fastjson.serializer.ObjectSerializer;
 import com.alibaba.fastjson.serializer.PatternPropertyPreFilter;
+import com.alibaba.fastjson.serializer.PropertyPreFilter;
+import com.alibaba.fastjson.serializer.SerializeConfig;
 import com.alibaba.fastjson.serializer.SerializeFilter;
+import com.alibaba.fastjson.serializer.SerializeWriter;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.fastjson.serializer.StringPropertyPreFilter;
+import com.alibaba.fastjson.util.FieldInfo;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.LocaleProvider;
+import com.opensymphony.xwork2.TextProvider;
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.interceptor.ValidationAware;
+import com.opensymphony.xwork2.util.ClassLoaderUtil;
 
 public class JSONSerializerUtils {
 
-	protected static  SerializerFeature[] GENERATE_FEATURES = { 
+	private static final Logger LOG = LoggerFactory.getLogger(JSONSerializerUtils.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** the global configuration, so its autoType accept/deny lists and safeMode apply to the plugin */
+	private static final ParserConfig PARSER_CONFIG = ParserConfig.getGlobalInstance();
+
+	private static final SerializerFeature[] GENERATE_FEATURES = { 
 			
 		SerializerFeature.QuoteFieldNames,
 			
@@ -82,59 +130,309 @@ public class JSONSerializerUtils {
 	
 	public final static String RFC3339_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
 	
-	static {
-		JSON.DEFFAULT_DATE_FORMAT = RFC3339_FORMAT;
+	/**
+	 * @return a copy of the features every serialization of the plugin uses
+	 */
+	public static SerializerFeature[] getGenerateFeatures() {
+		return GENERATE_FEATURES.clone();
 	}
 	
-	public static SerializeFilter[] buildFilters(Object object,  List<Pattern> excludeProperties,
-			List<Pattern> includeProperties, boolean excludeNullProperties) {
-		List<SerializeFilter> filters = new ArrayList<SerializeFilter>();
-    	
-		List<String> includes = new ArrayList<String>();
-		List<String> excludes = new ArrayList<String>();
+	/**
+	 * Patterns and property names declared by the {@link IncludeFilter} and
+	 * {@link ExcludeFilter} annotations of a class, compiled once per class.
+	 */
+	private static final class AnnotatedFilters {
 		
-		IncludeFilter includeFilter = object.getClass().getAnnotation(IncludeFilter.class);
-		if( null != includeFilter){
-			
-			for (String item : includeFilter.patterns()) {
-                if (item != null) {
-                	includeProperties.add(Pattern.compile(item));
-                }
-            }
-			
-			for (String item : includeFilter.properties()) {
-                if (item != null) {
-                	includes.add(item);
-                }
-            }
-			
+		final List<Pattern> includePatterns = new ArrayList<Pattern>();
+		final List<String> includes = new ArrayList<String>();
+		final List<Pattern> excludePatterns = new ArrayList<Pattern>();
+		final List<String> excludes = new ArrayList<String>();
+		
+		AnnotatedFilters(Class<?> type) {
+			IncludeFilter includeFilter = type.getAnnotation(IncludeFilter.class);
+			if (includeFilter != null) {
+				for (String item : includeFilter.patterns()) {
+					if (item != null) {
+						includePatterns.add(Pattern.compile(item));
+					}
+				}
+				for (String item : includeFilter.properties()) {
+					if (item != null) {
+						includes.add(item);
+					}
+				}
+			}
+			ExcludeFilter excludeFilter = type.getAnnotation(ExcludeFilter.class);
+			if (excludeFilter != null) {
+				for (String item : excludeFilter.patterns()) {
+					if (item != null) {
+						excludePatterns.add(Pattern.compile(item));
+					}
+				}
+				for (String item : excludeFilter.properties()) {
+					if (item != null) {
+						excludes.add(item);
+					}
+				}
+			}
 		}
 		
+	}
+	
+	private static final ClassValue<AnnotatedFilters> ANNOTATED_FILTERS = new ClassValue<AnnotatedFilters>() {
+		@Override
+		protected AnnotatedFilters computeValue(Class<?> type) {
+			return new AnnotatedFilters(type);
+		}
+	};
+	
+	/**
+	 * Properties of the XWork base types of actions, such as the action errors,
+	 * the locale or the resource bundle of the texts. They are rarely meant to
+	 * be part of a response and some of them are expensive to compute.
+	 */
+	private static final Map<Class<?>, Set<String>> FRAMEWORK_PROPERTIES = frameworkProperties(
+			ActionSupport.class, ValidationAware.class, TextProvider.class, LocaleProvider.class);
+	
+	private static Map<Class<?>, Set<String>> frameworkProperties(Class<?>... types) {
+		Map<Class<?>, Set<String>> properties = new HashMap<Class<?>, Set<String>>();
+		for (Class<?> type : types) {
+			Set<String> names = new HashSet<String>();
+			for (FieldInfo property : TypeUtils.computeGetters(type, null)) {
+				names.add(property.name);
+			}
+			properties.put(type, names);
+		}
+		return properties;
+	}
+	
+	/**
+	 * Names of the properties a class declares itself, through public getters
+	 * and public fields, and of those declared by the interfaces it implements.
+	 * The names are the ones fastjson serializes, including renames by a
+	 * {@link JSONField} on the getter or on its field. Each set also exists
+	 * without the properties of the framework types the class extends, see
+	 * {@link #FRAMEWORK_PROPERTIES}.
+	 */
+	private static final class DeclaredProperties {
 		
-		ExcludeFilter excludeFilter = object.getClass().getAnnotation(ExcludeFilter.class);
-		if( null != excludeFilter){
-			
-			for (String item : excludeFilter.patterns()) {
-                if (item != null) {
-                	excludeProperties.add(Pattern.compile(item));
-                }
-            }
-			
-			for (String item : excludeFilter.properties()) {
-                if (item != null) {
-                	excludes.add(item);
-                }
-            }
-			
+		final Set<String> own;
+		final Set<String> withInterfaces;
+		final Set<String> framework;
+		final Set<String> ownWithoutFramework;
+		final Set<String> withInterfacesWithoutFramework;
+		
+		DeclaredProperties(Class<?> type) {
+			Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				collectInterfaces(current, interfaces);
+			}
+			Set<String> own = new HashSet<String>();
+			Set<String> withInterfaces = new HashSet<String>();
+			for (FieldInfo property : TypeUtils.computeGetters(type, null)) {
+				if (isDeclaredBy(property, type)) {
+					own.add(property.name);
+					withInterfaces.add(property.name);
+				} else if (property.method != null && isDeclaredBy(property.method, interfaces)) {
+					withInterfaces.add(property.name);
+				}
+			}
+			Set<String> framework = new HashSet<String>();
+			for (Map.Entry<Class<?>, Set<String>> entry : FRAMEWORK_PROPERTIES.entrySet()) {
+				if (entry.getKey().isAssignableFrom(type)) {
+					framework.addAll(entry.getValue());
+				}
+			}
+			this.own = Collections.unmodifiableSet(own);
+			this.withInterfaces = Collections.unmodifiableSet(withInterfaces);
+			this.framework = Collections.unmodifiableSet(framework);
+			this.ownWithoutFramework = without(own, framework);
+			this.withInterfacesWithoutFramework = without(withInterfaces, framework);
+		}
+		
+		private static Set<String> without(Set<String> names, Set<String> excluded) {
+			Set<String> result = new HashSet<String>(names);
+			result.removeAll(excluded);
+			return Collections.unmodifiableSet(result);
+		}
+		
+		private static void collectInterfaces(Class<?> type, Set<Class<?>> interfaces) {
+			for (Class<?> implemented : type.getInterfaces()) {
+				if (interfaces.add(implemented)) {
+					collectInterfaces(implemented, interfaces);
+				}
+			}
+		}
+		
+		private static boolean isDeclaredBy(FieldInfo property, Class<?> type) {
+			return (property.method != null && property.method.getDeclaringClass() == type)
+					|| (property.field != null && property.field.getDeclaringClass() == type);
+		}
+		
+		private static boolean isDeclaredBy(Method getter, Set<Class<?>> interfaces) {
+			for (Class<?> implemented : interfaces) {
+				for (Method method : implemented.getDeclaredMethods()) {
+					if (method.getName().equals(getter.getName()) && method.getParameterTypes().length == 0) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+		
+	}
+	
+	private static final ClassValue<DeclaredProperties> DECLARED_PROPERTIES = new ClassValue<DeclaredProperties>() {
+		@Override
+		protected DeclaredProperties computeValue(Class<?> type) {
+			return new DeclaredProperties(type);
+		}
+	};
+	
+	/**
+	 * Keeps only the properties of the root object which its class declares,
+	 * or leaves out the given ones.
+	 */
+	private static final class DeclaredPropertyFilter implements PropertyPreFilter {
+		
+		private final Object root;
+		private final Set<String> names;
+		private final boolean keep;
+		
+		DeclaredPropertyFilter(Object root, Set<String> names, boolean keep) {
+			this.root = root;
+			this.names = names;
+			this.keep = keep;
+		}
+		
+		@Override
+		public boolean apply(JSONSerializer serializer, Object object, String name) {
+			return object != root || names.contains(name) == keep;
 		}
 		
-		filters.add(new StringPropertyPreFilter(object.getClass(), excludes, includes));
-		filters.add(new PatternPropertyPreFilter(object.getClass(), excludeProperties, includeProperties));
+	}
+	
+	/**
+	 * Builds the filters of a serialization. The given lists are neither modified
+	 * nor kept, so shared result configurations can be used from many threads.
+	 *
+	 * @param object the root object, its class may declare {@link IncludeFilter} and {@link ExcludeFilter}
+	 * @param excludeProperties patterns of properties to exclude, may be null
+	 * @param includeProperties patterns of properties to include, may be null
+	 * @param excludeNullProperties whether null values are skipped
+	 * @return new filters
+	 */
+	public static SerializeFilter[] buildFilters(Object object,  List<Pattern> excludeProperties,
+			List<Pattern> includeProperties, boolean excludeNullProperties) {
+		return buildFilters(object, excludeProperties, includeProperties, false, true, excludeNullProperties);
+	}
+	
+	/**
+	 * Builds the filters of a serialization. The given lists are neither modified
+	 * nor kept, so shared result configurations can be used from many threads.
+	 *
+	 * @param object the root object, its class may declare {@link IncludeFilter} and {@link ExcludeFilter}
+	 * @param excludeProperties patterns of properties to exclude, may be null
+	 * @param includeProperties patterns of properties to include, may be null
+	 * @param ignoreHierarchy whether properties of a JavaBean root are limited to the ones its class declares
+	 * @param ignoreInterfaces whether properties declared by the interfaces of the root class are left out
+	 *            as well, only used with ignoreHierarchy
+	 * @param excludeNullProperties whether null values are skipped
+	 * @return new filters
+	 */
+	public static SerializeFilter[] buildFilters(Object object, List<Pattern> excludeProperties,
+			List<Pattern> includeProperties, boolean ignoreHierarchy, boolean ignoreInterfaces,
+			boolean excludeNullProperties) {
+		return buildFilters(object, excludeProperties, includeProperties, ignoreHierarchy, ignoreInterfaces, false,
+				excludeNullProperties);
+	}
+	
+	/**
+	 * Builds the filters of a serialization. The given lists are neither modified
+	 * nor kept, so shared result configurations can be used from many threads.
+	 *
+	 * @param object the root object, its class may declare {@link IncludeFilter} and {@link ExcludeFilter}
+	 * @param excludeProperties patterns of properties to exclude, may be null
+	 * @param includeProperties patterns of properties to include, may be null
+	 * @param ignoreHierarchy whether properties of a JavaBean root are limited to the ones its class declares
+	 * @param ignoreInterfaces whether properties declared by the interfaces of the root class are left out
+	 *            as well, only used with ignoreHierarchy
+	 * @param excludeFrameworkProperties whether the properties a root action inherits from
+	 *            {@link ActionSupport}, {@link ValidationAware}, {@link TextProvider} and
+	 *            {@link LocaleProvider} are left out, even if its class overrides them
+	 * @param excludeNullProperties whether null values are skipped
+	 * @return new filters
+	 */
+	public static SerializeFilter[] buildFilters(Object object, List<Pattern> excludeProperties,
+			List<Pattern> includeProperties, boolean ignoreHierarchy, boolean ignoreInterfaces,
+			boolean excludeFrameworkProperties, boolean excludeNullProperties) {
+		Class<?> type = object == null ? null : object.getClass();
+		AnnotatedFilters annotated = type == null ? null : ANNOTATED_FILTERS.get(type);
+		List<SerializeFilter> filters = new ArrayList<SerializeFilter>(4);
+		if ((ignoreHierarchy || excludeFrameworkProperties) && isJavaBean(type)) {
+			DeclaredProperties declared = DECLARED_PROPERTIES.get(type);
+			if (ignoreHierarchy) {
+				Set<String> names;
+				if (excludeFrameworkProperties) {
+					names = ignoreInterfaces ? declared.ownWithoutFramework : declared.withInterfacesWithoutFramework;
+				} else {
+					names = ignoreInterfaces ? declared.own : declared.withInterfaces;
+				}
+				filters.add(new DeclaredPropertyFilter(object, names, true));
+			} else if (!declared.framework.isEmpty()) {
+				filters.add(new DeclaredPropertyFilter(object, declared.framework, false));
+			}
+		}
+		if (annotated != null && (!annotated.excludes.isEmpty() || !annotated.includes.isEmpty())) {
+			filters.add(new StringPropertyPreFilter(type, annotated.excludes, annotated.includes));
+		}
+		List<Pattern> excludes = concat(excludeProperties, annotated == null ? null : annotated.excludePatterns);
+		List<Pattern> includes = concat(includeProperties, annotated == null ? null : annotated.includePatterns);
+		if (!excludes.isEmpty() || !includes.isEmpty()) {
+			filters.add(new PatternPropertyPreFilter(type, excludes, includes));
+		}
 		if(excludeNullProperties){
 			filters.add(new NullPropertyFilter());
 		}
 		return filters.toArray( new SerializeFilter[filters.size()]);
 	}
+	
+	private static boolean isJavaBean(Class<?> type) {
+		return type != null && !type.isArray() && !type.isPrimitive() && !type.isEnum()
+				&& !Map.class.isAssignableFrom(type) && !Collection.class.isAssignableFrom(type)
+				&& !type.getName().startsWith("java.");
+	}
+	
+	private static List<Pattern> concat(List<Pattern> configured, List<Pattern> annotated) {
+		if (annotated == null || annotated.isEmpty()) {
+			return configured == null ? Collections.<Pattern>emptyList() : configured;
+		}
+		if (configured == null || configured.isEmpty()) {
+			return annotated;
+		}
+		List<Pattern> result = new ArrayList<Pattern>(configured.size() + annotated.size());
+		result.addAll(configured);
+		result.addAll(annotated);
+		return result;
+	}
+        
+    /**
+     * Derives the JSON property name of a getter from fastjson's own bean
+     * introspection, honouring {@link JSONField#name()} on the getter and on
+     * its field.
+     *
+     * @param method a public no-argument method
+     * @return the property name, null if fastjson does not serialize the method as a getter
+     */
+    public static String getPropertyName(Method method) {
+    	for (FieldInfo property : TypeUtils.computeGetters(method.getDeclaringClass(), null)) {
+    		if (property.method != null && property.method.getName().equals(method.getName())
+    				&& property.method.getParameterTypes().length == 0) {
+    			return property.name;
+    		}
+    	}
+    	return null;
+    }
         
     /**
      * Serializes an object into JSON.
@@ -146,7 +444,7 @@ public class JSONSerializerUtils {
     	
     	SerializeFilter[] filters = buildFilters(object, null, null, true) ;
         
-        return JSONObject.toJSONString(object, filters, GENERATE_FEATURES);
+        return serialize(object, filters, (String) null);
     }
 
     /**
@@ -165,9 +463,10 @@ public class JSONSerializerUtils {
     		List<Pattern> includeProperties, boolean ignoreHierarchy, boolean excludeNullProperties)
             throws JSONException {
     	
-    	SerializeFilter[] filters = buildFilters(object, excludeProperties, includeProperties, excludeNullProperties) ;
+    	SerializeFilter[] filters = buildFilters(object, excludeProperties, includeProperties, ignoreHierarchy, true,
+    			excludeNullProperties) ;
         
-        return JSONObject.toJSONString(object, filters, GENERATE_FEATURES);
+        return serialize(object, filters, (String) null);
     }
 
     /**
@@ -186,11 +485,30 @@ public class JSONSerializerUtils {
     public static String serialize(Object object, List<Pattern> excludeProperties, List<Pattern> includeProperties, 
     		boolean ignoreHierarchy,  boolean excludeNullProperties, String defaultDateFormat) throws JSONException {
     	
-    	SerializeFilter[] filters = buildFilters(object, excludeProperties, includeProperties, excludeNullProperties) ;
-    	JSON.DEFFAULT_DATE_FORMAT = defaultDateFormat;
-        return JSONObject.toJSONString(object, filters, GENERATE_FEATURES);
+    	SerializeFilter[] filters = buildFilters(object, excludeProperties, includeProperties, ignoreHierarchy, true,
+    			excludeNullProperties) ;
+        return serialize(object, filters, defaultDateFormat);
 
     }
+    
+    /**
+     * Serializes an object into JSON using already built filters.
+     *
+     * @param object object to be serialized
+     * @param filters filters applied during serialization
+     * @param defaultDateFormat date format used to serialize dates, may be null
+     * @return JSON string
+     * @throws JSONException in case of error during serialize
+     */
+    public static String serialize(Object object, SerializeFilter[] filters, String defaultDateFormat) throws JSONException {
+    	SerializeWriter out = new SerializeWriter(null, JSON.DEFAULT_GENERATE_FEATURE, GENERATE_FEATURES);
+    	try {
+    		newSerializer(out, filters, defaultDateFormat).write(object);
+    		return out.toString();
+    	} finally {
+    		out.close();
+    	}
+    }
 
     
     /**
@@ -221,7 +539,271 @@ public class JSONSerializerUtils {
     public static void serialize(Writer writer, Object object, List<Pattern> excludeProperties,
     		List<Pattern> includeProperties, boolean excludeNullProperties) throws IOException,
             JSONException {
-    	writer.write(serialize(object, excludeProperties, includeProperties, true, excludeNullProperties));
+    	writer.write(serialize(object, excludeProperties, includeProperties, false, excludeNullProperties));
+    }
+    
+    /**
+     * Serializes an object into JSON to the given writer, excluding any
+     * properties matching any of the regular expressions in the given
+     * Set. Unlike {@link #serialize(Writer, Object, List, List, boolean)} the
+     * JSON text is never materialized as a String: fastjson flushes its
+     * internal buffer into the writer whenever it fills up.
+     *
+     * @param writer Writer to serialize the object to
+     * @param object object to be serialized
+     * @param excludeProperties Patterns matching properties to ignore
+     * @param includeProperties Patterns matching properties to include
+     * @param ignoreHierarchy whether to ignore properties defined on base classes of the root object
+     * @param excludeNullProperties enable/disable excluding of null properties
+     * @param defaultDateFormat date format used to serialize dates
+     * @throws IOException  in case of IO errors
+     * @throws JSONException in case of error during serialize
+     */
+    public static void serialize(Writer writer, Object object, List<Pattern> excludeProperties, List<Pattern> includeProperties,
+    		boolean ignoreHierarchy, boolean excludeNullProperties, String defaultDateFormat) throws IOException, JSONException {
+    	
+    	SerializeFilter[] filters = buildFilters(object, excludeProperties, includeProperties, ignoreHierarchy, true,
+    			excludeNullProperties) ;
+    	serialize(writer, object, filters, defaultDateFormat);
+    }
+    
+    /**
+     * Serializes an object into JSON to the given writer using already built filters.
+     *
+     * @param writer Writer to serialize the object to
+     * @param object object to be serialized
+     * @param filters filters applied during serialization
+     * @param defaultDateFormat date format used to serialize dates, may be null
+     * @throws IOException  in case of IO errors
+     * @throws JSONException in case of error during serialize
+     */
+    public static void serialize(Writer writer, Object object, SerializeFilter[] filters, String defaultDateFormat)
+    		throws IOException, JSONException {
+    	
+    	SerializeWriter out = new SerializeWriter(writer, JSON.DEFAULT_GENERATE_FEATURE, GENERATE_FEATURES);
+    	try {
+    		newSerializer(out, filters, defaultDateFormat).write(object);
+    	} finally {
+    		// flushes the remaining chars into the writer
+    		out.close();
+    	}
+    }
+    
+    private static JSONSerializer newSerializer(SerializeWriter out, SerializeFilter[] filters, String defaultDateFormat) {
+    	JSONSerializer serializer = null;
+    	if (filters != null) {
+    		for (SerializeFilter filter : filters) {
+    			if (filter instanceof DeferredValues.Substitution) {
+    				// the root object takes the resolved values of its deferred getters
+    				final DeferredValues.Substitution substitution = (DeferredValues.Substitution) filter;
+    				serializer = new JSONSerializer(out, SerializeConfig.getGlobalInstance()) {
+    					@Override
+    					public ObjectSerializer getObjectWriter(Class<?> clazz) {
+    						return substitution.getObjectWriter(clazz, super.getObjectWriter(clazz));
+    					}
+    				};
+    			}
+    		}
+    	}
+    	if (serializer == null) {
+    		serializer = new JSONSerializer(out, SerializeConfig.getGlobalInstance());
+    	}
+    	// set on each serializer, the global JSON.DEFFAULT_DATE_FORMAT is left alone
+    	serializer.setDateFormat(defaultDateFormat != null && defaultDateFormat.length() > 0 ? defaultDateFormat
+    			: RFC3339_FORMAT);
+    	if (filters != null) {
+    		for (SerializeFilter filter : filters) {
+    			serializer.addFilter(filter);
+    		}
+    	}
+    	return serializer;
+    }
+    
+    /**
+     * @param object the object to be serialized
+     * @return the number of elements if the object is a collection or an object array, -1 otherwise
+     */
+    public static int sizeOf(Object object) {
+    	if (object instanceof Collection) {
+    		return ((Collection<?>) object).size();
+    	}
+    	if (object instanceof Object[]) {
+    		return ((Object[]) object).length;
+    	}
+    	return -1;
+    }
+    
+    /**
+     * Serializes a collection or an object array into JSON to the given writer,
+     * using all cores: the elements are split into chunks of <code>chunkSize</code>
+     * elements which are serialized concurrently on a shared {@link ForkJoinPool}
+     * and written to the writer in their original order. At most two chunks per
+     * core are held in memory at a time. The pool is created on first use and shut
+     * down when the Struts dispatcher is destroyed, see {@link JSONShutdown}.
+     * <p/>
+     * The filters are shared by all chunks and must therefore be stateless. Each
+     * chunk is serialized as an array of its own, so the paths seen by the filters
+     * carry indices relative to the chunk: path-based include and exclude patterns
+     * must not be used with this method.
+     *
+     * @param writer Writer to serialize the object to
+     * @param object collection or object array to be serialized
+     * @param filters filters applied during serialization
+     * @param defaultDateFormat date format used to serialize dates, may be null
+     * @param chunkSize number of elements serialized by one task
+     * @throws IOException  in case of IO errors
+     * @throws JSONException in case of error during serialize
+     */
+    public static void serializeParallel(Writer writer, Object object, final SerializeFilter[] filters,
+    		final String defaultDateFormat, int chunkSize) throws IOException, JSONException {
+    	
+    	final List<?> elements;
+    	if (object instanceof Object[]) {
+    		elements = Arrays.asList((Object[]) object);
+    	} else if (object instanceof List) {
+    		elements = (List<?>) object;
+    	} else {
+    		// one copy of the references, sub lists of sets do not exist
+    		elements = new ArrayList<Object>((Collection<?>) object);
+    	}
+    	
+    	ForkJoinPool pool = getParallelPool();
+    	int window = pool.getParallelism() * 2;
+    	Deque<Future<SerializeWriter>> pending = new ArrayDeque<Future<SerializeWriter>>(window);
+    	ElementsWriter elementsWriter = new ElementsWriter(writer);
+    	int size = elements.size();
+    	boolean first = true;
+    	writer.write('[');
+    	try {
+    		for (int start = 0; start < size; start += chunkSize) {
+    			final List<?> chunk = elements.subList(start, Math.min(start + chunkSize, size));
+    			pending.add(pool.submit(new Callable<SerializeWriter>() {
+    				@Override
+    				public SerializeWriter call() {
+    					SerializeWriter out = new SerializeWriter(null, JSON.DEFAULT_GENERATE_FEATURE, GENERATE_FEATURES);
+    					newSerializer(out, filters, defaultDateFormat).write(chunk);
+    					return out;
+    				}
+    			}));
+    			if (pending.size() >= window) {
+    				first = writeChunk(writer, elementsWriter, pending.poll(), first);
+    			}
+    		}
+    		while (!pending.isEmpty()) {
+    			first = writeChunk(writer, elementsWriter, pending.poll(), first);
+    		}
+    	} finally {
+    		for (Future<SerializeWriter> future : pending) {
+    			future.cancel(false);
+    		}
+    	}
+    	writer.write(']');
+    }
+    
+    private static boolean writeChunk(Writer writer, ElementsWriter elementsWriter, Future<SerializeWriter> future, boolean first)
+    		throws IOException {
+    	SerializeWriter chunk;
+    	try {
+    		chunk = future.get();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new JSONException("Interrupted while serializing", e);
+    	} catch (ExecutionException e) {
+    		if (e.getCause() instanceof RuntimeException) {
+    			throw (RuntimeException) e.getCause();
+    		}
+    		throw new JSONException(e.getCause().getMessage(), e.getCause());
+    	}
+    	try {
+    		if (!first) {
+    			writer.write(',');
+    		}
+    		elementsWriter.reset();
+    		chunk.writeTo(elementsWriter);
+    	} finally {
+    		chunk.close();
+    	}
+    	return false;
+    }
+    
+    /**
+     * Receives a chunk serialized as JSON array, in any number of writes, and
+     * forwards it without its brackets: the first char is skipped and the last
+     * one received is held back until more follow.
+     */
+    private static final class ElementsWriter extends Writer {
+    	
+    	private final Writer writer;
+    	private boolean opened;
+    	private boolean held;
+    	private char last;
+    	
+    	ElementsWriter(Writer writer) {
+    		this.writer = writer;
+    	}
+    	
+    	/**
+    	 * Starts a new chunk, the char held back, its closing bracket, is dropped.
+    	 */
+    	void reset() {
+    		opened = false;
+    		held = false;
+    	}
+    	
+    	@Override
+    	public void write(char[] cbuf, int off, int len) throws IOException {
+    		if (!opened && len > 0) {
+    			opened = true;
+    			off++;
+    			len--;
+    		}
+    		if (len == 0) {
+    			return;
+    		}
+    		if (held) {
+    			writer.write(last);
+    		}
+    		writer.write(cbuf, off, len - 1);
+    		last = cbuf[off + len - 1];
+    		held = true;
+    	}
+    	
+    	@Override
+    	public void flush() throws IOException {
+    		writer.flush();
+    	}
+    	
+    	@Override
+    	public void close() {
+    	}
+    	
+    }
+    
+    private static ForkJoinPool parallelPool;
+    
+    private static synchronized ForkJoinPool getParallelPool() {
+    	if (parallelPool == null) {
+    		parallelPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    		JSONShutdown.register(new Runnable() {
+    			@Override
+    			public void run() {
+    				shutdownParallelPool();
+    			}
+    			
+    			@Override
+    			public String toString() {
+    				return "the parallel serialization pool";
+    			}
+    		});
+    	}
+    	return parallelPool;
+    }
+    
+    private static synchronized void shutdownParallelPool() {
+    	if (parallelPool != null) {
+    		parallelPool.shutdownNow();
+    		parallelPool = null;
+    	}
     }
     
     /**
@@ -232,7 +814,110 @@ public class JSONSerializerUtils {
      * @throws JSONException in case of error during serialize
      */
     public static Object deserialize(String json) throws JSONException {
-        return JSONObject.parse(json);
+        return JSON.parse(json, PARSER_CONFIG);
+    }
+
+    /**
+     * Deserializes a typed object from JSON
+     *
+     * @param json string in JSON
+     * @param type the type to convert to
+     * @param <T> the type to convert to
+     * @return deserialized object
+     * @throws JSONException in case of malformed content
+     */
+    public static <T> T deserialize(String json, Class<T> type) throws JSONException {
+        return deserialize(new StringReader(json), (Type) type);
+    }
+
+    /**
+     * Deserializes a typed object from JSON
+     *
+     * @param in stream to read UTF-8 encoded JSON from
+     * @param type the type to convert to, such as a bean class or a parameterized collection
+     * @param <T> the type to convert to
+     * @return deserialized object
+     * @throws JSONException in case of malformed content or IO errors
+     */
+    public static <T> T deserialize(InputStream in, Type type) throws JSONException {
+        return deserialize(new InputStreamReader(in, UTF_8), type);
+    }
+
+    /**
+     * Deserializes a typed object from JSON
+     *
+     * @param reader Reader to read a JSON string from
+     * @param type the type to convert to
+     * @param <T> the type to convert to
+     * @return deserialized object
+     * @throws JSONException in case of malformed content or IO errors
+     */
+    public static <T> T deserialize(Reader reader, TypeReference<T> type) throws JSONException {
+        return deserialize(reader, type.getType());
+    }
+
+    /**
+     * Deserializes a typed object from JSON, the content is parsed while it is
+     * read and converted by the cached deserializer of the type, without an
+     * intermediate {@link JSONObject}.
+     *
+     * @param reader Reader to read a JSON string from
+     * @param type the type to convert to, such as a bean class or a parameterized collection
+     * @param <T> the type to convert to
+     * @return deserialized object
+     * @throws JSONException in case of malformed content or IO errors
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T deserialize(Reader reader, Type type) throws JSONException {
+        DefaultJSONParser parser = newParser(reader);
+        try {
+            if (parser.getLexer().token() == JSONToken.NULL || parser.getLexer().token() == JSONToken.EOF) {
+                parser.getLexer().nextToken();
+                return null;
+            }
+            T value = (T) getDeserializer(type).deserialze(parser, type, null);
+            parser.handleResovleTask(value);
+            return value;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @param type a type read from JSON
+     * @return its deserializer, cached by the parser configuration; building it may generate a class
+     */
+    public static ObjectDeserializer getDeserializer(Type type) {
+        return PARSER_CONFIG.getDeserializer(type);
+    }
+
+    /**
+     * @return the configuration all JSON read by the plugin is parsed with, the
+     *         global one of the application
+     */
+    public static ParserConfig getParserConfig() {
+        return PARSER_CONFIG;
+    }
+
+    /**
+     * Resolves the deserializers of the given types at startup, instead of on
+     * the first requests reading them.
+     *
+     * @param commaDelim comma-delimited names of classes read from JSON
+     */
+    @Inject(value = "struts.fastjson.parser.warmup", required = false)
+    public static void setWarmupTypes(String commaDelim) {
+        Set<String> names = JSONOutputUtils.asSet(commaDelim);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            try {
+                getDeserializer(ClassLoaderUtil.loadClass(name, JSONSerializerUtils.class));
+            } catch (Exception e) {
+                LOG.warn("Could not warm up the JSON deserializer of {}", name, e);
+            }
+        }
     }
 
     /**
@@ -243,20 +928,40 @@ public class JSONSerializerUtils {
      * @throws JSONException when IOException happens
      */
     public static Object deserialize(Reader reader) throws JSONException {
-        // read content
-        BufferedReader bufferReader = new BufferedReader(reader);
-        String line;
-        StringBuilder buffer = new StringBuilder();
+        DefaultJSONParser parser = newParser(reader);
+        try {
+            return parser.parse();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @param reader Reader to read JSON from
+     * @return a parser reading the content as it goes, to be closed by the caller
+     */
+    public static DefaultJSONParser newParser(Reader reader) {
+        return new DefaultJSONParser(new JSONReaderScanner(reader), PARSER_CONFIG);
+    }
 
+    /**
+     * Sets the properties of an existing object from JSON, the content is parsed
+     * while it is read and values are converted by the cached deserializers of
+     * the {@link #getParserConfig() configuration of the plugin}.
+     *
+     * @param reader Reader to read a JSON object from, closed when done
+     * @param target the object whose properties are set
+     * @throws JSONException in case of malformed content or IO errors
+     */
+    public static void deserializeInto(Reader reader, Object target) throws JSONException {
+        DefaultJSONParser parser = newParser(reader);
         try {
-            while ((line = bufferReader.readLine()) != null) {
-                buffer.append(line);
+            if (parser.getLexer().token() != JSONToken.EOF) {
+                parser.parseObject(target);
             }
-        } catch (IOException e) {
-            throw new JSONException(e.getMessage());
+        } finally {
+            parser.close();
         }
-
-        return deserialize(buffer.toString());
     }
     
 }
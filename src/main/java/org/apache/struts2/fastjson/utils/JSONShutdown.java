@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.struts2.dispatcher.Dispatcher;
+import org.apache.struts2.dispatcher.DispatcherListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Releases what the plugin holds beyond the lifetime of the application, such
+ * as thread pools and MBeans, when the Struts dispatcher is destroyed on
+ * undeploy, so that the class loader of the application can be collected.
+ * <p/>
+ * Tasks are registered when the resource is created; the dispatcher listener is
+ * added with the first task. Containers without a Struts dispatcher may call
+ * {@link #run()} from a <code>ServletContextListener</code>.
+ */
+public class JSONShutdown {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JSONShutdown.class);
+
+	private static final List<Runnable> TASKS = new ArrayList<Runnable>();
+
+	private static final DispatcherListener LISTENER = new DispatcherListener() {
+
+		@Override
+		public void dispatcherInitialized(Dispatcher dispatcher) {
+		}
+
+		@Override
+		public void dispatcherDestroyed(Dispatcher dispatcher) {
+			JSONShutdown.run();
+		}
+
+	};
+
+	private static boolean listening;
+
+	/**
+	 * @param task run once when the application is undeployed
+	 */
+	public static void register(Runnable task) {
+		synchronized (JSONShutdown.class) {
+			TASKS.add(task);
+			if (!listening) {
+				Dispatcher.addDispatcherListener(LISTENER);
+				listening = true;
+			}
+		}
+	}
+
+	/**
+	 * Runs and forgets the registered tasks, in the reverse order of their
+	 * registration, and removes the dispatcher listener.
+	 */
+	public static void run() {
+		List<Runnable> tasks;
+		synchronized (JSONShutdown.class) {
+			if (listening) {
+				Dispatcher.removeDispatcherListener(LISTENER);
+				listening = false;
+			}
+			tasks = new ArrayList<Runnable>(TASKS);
+			TASKS.clear();
+		}
+		for (int i = tasks.size() - 1; i >= 0; i--) {
+			Runnable task = tasks.get(i);
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				LOG.warn("Could not release {}", task, e);
+			}
+		}
+	}
+
+}
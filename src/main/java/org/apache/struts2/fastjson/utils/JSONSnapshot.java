@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A serialized JSON document kept on disk, together with a pre-gzipped sibling
+ * file and a small properties file holding its version and creation time.
+ * <p/>
+ * Snapshots are shared by all requests of the JVM and looked up by directory
+ * and name, see {@link #getSnapshot(File, String)}. A new generation is always
+ * written to temporary files first and then moved over the published ones, the
+ * properties file last, so concurrent readers either see the old or the new
+ * document, never a partial one. A document is read through {@link #open(boolean)},
+ * whose entity tag always describes the content of the opened file.
+ */
+public class JSONSnapshot {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JSONSnapshot.class);
+
+	private static final ConcurrentMap<String, JSONSnapshot> SNAPSHOTS = new ConcurrentHashMap<String, JSONSnapshot>();
+
+	private static final String META_VERSION = "version";
+	private static final String META_CREATED = "created";
+
+	/**
+	 * Writes the JSON document of a snapshot.
+	 */
+	public interface Generator {
+
+		/**
+		 * @param out stream receiving the encoded JSON, must not be closed
+		 * @throws IOException in case of IO errors
+		 */
+		void generate(OutputStream out) throws IOException;
+
+	}
+
+	private final File jsonFile;
+	private final File gzipFile;
+	private final File metaFile;
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Held to open the files, exclusively to replace them */
+	private final ReentrantReadWriteLock published = new ReentrantReadWriteLock();
+
+	private volatile boolean available;
+	private volatile boolean stale;
+	private volatile String version;
+	private volatile long created;
+
+	protected JSONSnapshot(File directory, String name) {
+		this.jsonFile = new File(directory, name + ".json");
+		this.gzipFile = new File(directory, name + ".json.gz");
+		this.metaFile = new File(directory, name + ".meta");
+		load();
+	}
+
+	/**
+	 * @param directory directory holding the snapshot files
+	 * @param name snapshot name, any character outside <code>[A-Za-z0-9._-]</code> is replaced
+	 * @return the shared snapshot instance
+	 */
+	public static JSONSnapshot getSnapshot(File directory, String name) {
+		String key = new File(directory, toFileName(name)).getAbsolutePath();
+		JSONSnapshot snapshot = SNAPSHOTS.get(key);
+		if (snapshot == null) {
+			JSONSnapshot created = new JSONSnapshot(directory, toFileName(name));
+			snapshot = SNAPSHOTS.putIfAbsent(key, created);
+			if (snapshot == null) {
+				snapshot = created;
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Marks every snapshot with the given name as stale, the next request regenerates it.
+	 * Useful for scheduled jobs that know the underlying data has changed.
+	 *
+	 * @param name snapshot name
+	 */
+	public static void invalidate(String name) {
+		String fileName = File.separator + toFileName(name);
+		for (JSONSnapshot snapshot : SNAPSHOTS.values()) {
+			if (snapshot.jsonFile.getPath().endsWith(fileName + ".json")) {
+				snapshot.stale = true;
+			}
+		}
+	}
+
+	protected static String toFileName(String name) {
+		StringBuilder builder = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| c == '.' || c == '_' || c == '-';
+			builder.append(valid ? c : '_');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @param expectedVersion version the snapshot must have, null to accept any version
+	 * @param ttl time to live in milliseconds, 0 or less for snapshots that never expire
+	 * @return true if the published document may be served as is
+	 */
+	public boolean isValid(String expectedVersion, long ttl) {
+		if (!available || stale || created == 0) {
+			return false;
+		}
+		if (expectedVersion != null && !expectedVersion.equals(version)) {
+			return false;
+		}
+		return ttl <= 0 || System.currentTimeMillis() - created < ttl;
+	}
+
+	/**
+	 * Regenerates the snapshot unless it is valid. While a stale snapshot is
+	 * regenerated by one thread, the others keep serving the previous document;
+	 * only when there is no document at all they wait for the generation.
+	 *
+	 * @param expectedVersion version of the new document
+	 * @param ttl time to live in milliseconds
+	 * @param generator writes the document
+	 * @throws IOException in case of IO errors
+	 */
+	public void refresh(String expectedVersion, long ttl, Generator generator) throws IOException {
+		if (isValid(expectedVersion, ttl)) {
+			return;
+		}
+		if (available) {
+			if (!lock.tryLock()) {
+				return;
+			}
+		} else {
+			lock.lock();
+		}
+		try {
+			if (!isValid(expectedVersion, ttl)) {
+				generate(expectedVersion, generator);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	protected void generate(String newVersion, Generator generator) throws IOException {
+		File directory = jsonFile.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create snapshot directory " + directory);
+		}
+		File jsonTemp = File.createTempFile(jsonFile.getName(), ".tmp", directory);
+		File gzipTemp = File.createTempFile(gzipFile.getName(), ".tmp", directory);
+		File metaTemp = File.createTempFile(metaFile.getName(), ".tmp", directory);
+		try {
+			long start = System.currentTimeMillis();
+			OutputStream out = new FileOutputStream(jsonTemp);
+			try {
+				generator.generate(out);
+			} finally {
+				out.close();
+			}
+			compress(jsonTemp, gzipTemp);
+
+			long now = System.currentTimeMillis();
+			Properties meta = new Properties();
+			if (newVersion != null) {
+				meta.setProperty(META_VERSION, newVersion);
+			}
+			meta.setProperty(META_CREATED, String.valueOf(now));
+			OutputStream metaOut = new FileOutputStream(metaTemp);
+			try {
+				meta.store(metaOut, null);
+			} finally {
+				metaOut.close();
+			}
+
+			// the properties file is moved last, it only ever describes complete data files
+			published.writeLock().lock();
+			try {
+				move(gzipTemp, gzipFile);
+				move(jsonTemp, jsonFile);
+				move(metaTemp, metaFile);
+				this.version = newVersion;
+				this.created = now;
+				this.stale = false;
+				this.available = true;
+			} finally {
+				published.writeLock().unlock();
+			}
+			LOG.debug("Generated JSON snapshot {} ({} bytes) in {} ms", jsonFile, jsonFile.length(), now - start);
+		} finally {
+			jsonTemp.delete();
+			gzipTemp.delete();
+			metaTemp.delete();
+		}
+	}
+
+	protected void load() {
+		if (!jsonFile.isFile() || !gzipFile.isFile() || !metaFile.isFile()) {
+			return;
+		}
+		try {
+			Properties meta = new Properties();
+			InputStream in = new FileInputStream(metaFile);
+			try {
+				meta.load(in);
+			} finally {
+				in.close();
+			}
+			this.version = meta.getProperty(META_VERSION);
+			this.created = Long.parseLong(meta.getProperty(META_CREATED, "0"));
+			this.available = true;
+		} catch (Exception e) {
+			LOG.warn("Ignoring unreadable JSON snapshot " + jsonFile, e);
+		}
+	}
+
+	private static void compress(File source, File target) throws IOException {
+		InputStream in = new FileInputStream(source);
+		try {
+			GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(target), 8192);
+			try {
+				byte[] buf = new byte[8192];
+				int len;
+				while ((len = in.read(buf)) > 0) {
+					out.write(buf, 0, len);
+				}
+				out.finish();
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void move(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Opens the published document. The returned content keeps reading the
+	 * opened generation even if the snapshot is regenerated meanwhile.
+	 *
+	 * @param gzip whether the gzip compressed file is opened
+	 * @return the opened document, to be closed by the caller
+	 * @throws IOException if the file can not be opened
+	 */
+	public Content open(boolean gzip) throws IOException {
+		published.readLock().lock();
+		try {
+			FileInputStream in = new FileInputStream(gzip ? gzipFile : jsonFile);
+			return new Content(in, getETag(gzip), created);
+		} finally {
+			published.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param gzip whether the tag is the one of the gzip compressed file
+	 * @return a strong entity tag derived from version and creation time,
+	 *         different for the compressed and the identity encoding
+	 */
+	protected String getETag(boolean gzip) {
+		return "\"" + Long.toHexString(created) + "-" + Integer.toHexString(String.valueOf(version).hashCode())
+				+ (gzip ? "-gzip" : "") + "\"";
+	}
+
+	/**
+	 * One generation of the document opened for reading.
+	 */
+	public static class Content implements Closeable {
+
+		private final FileInputStream in;
+		private final String etag;
+		private final long created;
+
+		protected Content(FileInputStream in, String etag, long created) {
+			this.in = in;
+			this.etag = etag;
+			this.created = created;
+		}
+
+		public FileChannel getChannel() {
+			return in.getChannel();
+		}
+
+		/**
+		 * @return the entity tag of the opened file
+		 */
+		public String getETag() {
+			return etag;
+		}
+
+		public long getCreated() {
+			return created;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+	public File getJsonFile() {
+		return jsonFile;
+	}
+
+	public File getGzipFile() {
+		return gzipFile;
+	}
+
+	public boolean isAvailable() {
+		return available;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends a buffered response body with the Servlet 3.1 non-blocking API: chunks
+ * are only written while {@link ServletOutputStream#isReady()} is true, no thread
+ * waits while a slow client drains the socket. Once the body has been sent, or the
+ * write failed, the buffer is released and the async context completed.
+ */
+public class NonBlockingBodyWriter implements WriteListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NonBlockingBodyWriter.class);
+
+	private static final int CHUNK_SIZE = 8192;
+
+	private final ServletOutputStream out;
+	private final SpillableOutputStream body;
+	private final AsyncContext asyncContext;
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private InputStream in;
+	private boolean done;
+
+	/**
+	 * @param out the output stream of the response, already in async mode
+	 * @param body the complete response body, owned by this writer from now on
+	 * @param asyncContext completed once the body has been sent
+	 */
+	public NonBlockingBodyWriter(ServletOutputStream out, SpillableOutputStream body, AsyncContext asyncContext) {
+		this.out = out;
+		this.body = body;
+		this.asyncContext = asyncContext;
+	}
+
+	/**
+	 * Registers a writer sending the body on the given response stream.
+	 *
+	 * @param out the output stream of the response, already in async mode
+	 * @param body the complete response body, owned by the writer from now on
+	 * @param asyncContext completed once the body has been sent
+	 */
+	public static void write(ServletOutputStream out, SpillableOutputStream body, AsyncContext asyncContext) {
+		out.setWriteListener(new NonBlockingBodyWriter(out, body, asyncContext));
+	}
+
+	@Override
+	public synchronized void onWritePossible() throws IOException {
+		if (done) {
+			return;
+		}
+		if (in == null) {
+			in = body.openInputStream();
+		}
+		while (out.isReady()) {
+			int len = in.read(chunk);
+			if (len < 0) {
+				finish();
+				return;
+			}
+			out.write(chunk, 0, len);
+		}
+	}
+
+	@Override
+	public synchronized void onError(Throwable throwable) {
+		LOG.debug("Non-blocking JSON write failed", throwable);
+		finish();
+	}
+
+	private void finish() {
+		done = true;
+		try {
+			if (in != null) {
+				in.close();
+			}
+		} catch (IOException e) {
+			LOG.debug(e.getMessage(), e);
+		}
+		body.release();
+		try {
+			asyncContext.complete();
+		} catch (IllegalStateException e) {
+			// already completed by the container, e.g. after a timeout
+			LOG.debug(e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A simple property path such as <code>data</code> or <code>page.items</code>,
+ * read from the objects of the value stack through cached getters instead of
+ * evaluating it with OGNL on every request.
+ * <p/>
+ * As with OGNL, the first property is taken from the first object of the stack
+ * having it, either through a public getter, a public field or a map key, and
+ * the following properties from the value of the previous one. Paths which are
+ * not simple, or which cannot be resolved this way, return {@link #UNRESOLVED}
+ * so the caller can fall back to OGNL.
+ */
+public final class PropertyPath {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PropertyPath.class);
+
+	/** returned when the path has to be evaluated by OGNL */
+	public static final Object UNRESOLVED = new Object();
+
+	private static final Pattern SIMPLE = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
+	/** names OGNL or the value stack give a meaning of their own */
+	private static final Set<String> RESERVED = new HashSet<String>(Arrays.asList("top", "class", "true", "false",
+			"null", "this", "in", "not", "and", "or", "instanceof", "new"));
+
+	private static final int MAX_CACHED_PATHS = 1024;
+	private static final ConcurrentMap<String, PropertyPath> PATHS = new ConcurrentHashMap<String, PropertyPath>();
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	/** marks a missing property in the getter cache */
+	private static final MethodHandle NONE = MethodHandles.constant(Object.class, null);
+
+	private static final ClassValue<ConcurrentMap<String, MethodHandle>> GETTERS = new ClassValue<ConcurrentMap<String, MethodHandle>>() {
+		@Override
+		protected ConcurrentMap<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<String, MethodHandle>();
+		}
+	};
+
+	private final String[] names;
+
+	private PropertyPath(String[] names) {
+		this.names = names;
+	}
+
+	/**
+	 * @param expression an OGNL expression
+	 * @return the compiled path, null if the expression is not a simple property path
+	 */
+	public static PropertyPath compile(String expression) {
+		if (expression == null) {
+			return null;
+		}
+		PropertyPath path = PATHS.get(expression);
+		if (path == null) {
+			if (!SIMPLE.matcher(expression).matches()) {
+				return null;
+			}
+			String[] names = StringUtils.split(expression, '.');
+			for (String name : names) {
+				if (RESERVED.contains(name)) {
+					return null;
+				}
+			}
+			path = new PropertyPath(names);
+			if (PATHS.size() < MAX_CACHED_PATHS) {
+				PATHS.putIfAbsent(expression, path);
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * @param root the objects of the value stack, top first
+	 * @return the value of the path, {@link #UNRESOLVED} if no object of the stack
+	 *         has the first property or a following one cannot be read
+	 */
+	public Object getValue(List<?> root) {
+		for (Object object : root) {
+			if (object == null) {
+				continue;
+			}
+			Object value;
+			if (object instanceof Map) {
+				if (!((Map<?, ?>) object).containsKey(names[0])) {
+					continue;
+				}
+				value = ((Map<?, ?>) object).get(names[0]);
+			} else {
+				MethodHandle getter = getter(object.getClass(), names[0]);
+				if (getter == NONE) {
+					continue;
+				}
+				value = invoke(getter, object, names[0]);
+			}
+			for (int i = 1; i < names.length && value != null; i++) {
+				if (value instanceof Map) {
+					value = ((Map<?, ?>) value).get(names[i]);
+					continue;
+				}
+				MethodHandle getter = getter(value.getClass(), names[i]);
+				if (getter == NONE) {
+					return UNRESOLVED;
+				}
+				value = invoke(getter, value, names[i]);
+			}
+			return value;
+		}
+		return UNRESOLVED;
+	}
+
+	private static Object invoke(MethodHandle getter, Object object, String name) {
+		try {
+			return (Object) getter.invokeExact(object);
+		} catch (Throwable e) {
+			// as OGNL does when finding values, failures read as null
+			LOG.warn("Could not read property {} of {}", name, object.getClass().getName(), e);
+			return null;
+		}
+	}
+
+	private static MethodHandle getter(Class<?> type, String name) {
+		ConcurrentMap<String, MethodHandle> getters = GETTERS.get(type);
+		MethodHandle getter = getters.get(name);
+		if (getter == null) {
+			getter = findGetter(type, name);
+			getters.putIfAbsent(name, getter);
+		}
+		return getter;
+	}
+
+	private static MethodHandle findGetter(Class<?> type, String name) {
+		String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		try {
+			Method method = findMethod(type, "get" + suffix);
+			if (method == null) {
+				method = findMethod(type, "is" + suffix);
+				if (method != null && method.getReturnType() != boolean.class) {
+					method = null;
+				}
+			}
+			if (method != null) {
+				ReflectionUtils.makeAccessible(method);
+				return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+			}
+			Field field = type.getField(name);
+			if (!Modifier.isStatic(field.getModifiers())) {
+				ReflectionUtils.makeAccessible(field);
+				return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+			}
+		} catch (NoSuchFieldException e) {
+			// no such property
+		} catch (IllegalAccessException e) {
+			LOG.debug("Could not access property {} of {}", name, type.getName(), e);
+		}
+		return NONE;
+	}
+
+	private static Method findMethod(Class<?> type, String name) {
+		try {
+			Method method = type.getMethod(name);
+			return Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class ? null : method;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
@@ -16,6 +16,9 @@
 
 package org.apache.struts2.fastjson.utils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -24,7 +27,10 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -48,6 +54,55 @@ public abstract class ReflectionUtils {
 	
 	protected static Logger LOG = LoggerFactory.getLogger(ReflectionUtils.class);
 
+	/** marks a member known not to exist in the caches */
+	private static final Object MISSING = new Object();
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	/**
+	 * Members of a class looked up by name, cached so repeated lookups do not
+	 * walk the class hierarchy again.
+	 */
+	private static final class ClassMembers {
+
+		final ConcurrentMap<String, Object> fields = new ConcurrentHashMap<String, Object>();
+		final ConcurrentMap<MethodKey, Object> methods = new ConcurrentHashMap<MethodKey, Object>();
+		final ConcurrentMap<MethodKey, Object> invokers = new ConcurrentHashMap<MethodKey, Object>();
+		final ConcurrentMap<String, Object> getters = new ConcurrentHashMap<String, Object>();
+
+	}
+
+	private static final class MethodKey {
+
+		final String name;
+		final Class<?>[] parameterTypes;
+
+		MethodKey(String name, Class<?>[] parameterTypes) {
+			this.name = name;
+			// copied, the caller may reuse its array after the key is cached
+			this.parameterTypes = parameterTypes == null ? new Class<?>[0] : parameterTypes.clone();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof MethodKey && name.equals(((MethodKey) other).name)
+					&& Arrays.equals(parameterTypes, ((MethodKey) other).parameterTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode() * 31 + Arrays.hashCode(parameterTypes);
+		}
+
+	}
+
+	private static final ClassValue<ClassMembers> MEMBERS = new ClassValue<ClassMembers>() {
+		@Override
+		protected ClassMembers computeValue(Class<?> type) {
+			return new ClassMembers();
+		}
+	};
+
 	/**
 	 * 
 	 * @description	： 循环向上转型, 获取对象的DeclaredField,并强制设置为可访问
@@ -73,7 +128,13 @@ public abstract class ReflectionUtils {
 	 * @return the corresponding Field object, or {@code null} if not found
 	 */
 	public static Field getField(Class<?> clazz, String name) {
-		return getField(clazz, name, null);
+		ConcurrentMap<String, Object> fields = MEMBERS.get(clazz).fields;
+		Object field = fields.get(name);
+		if (field == null) {
+			field = getField(clazz, name, null);
+			fields.putIfAbsent(name, field == null ? MISSING : field);
+		}
+		return field == MISSING ? null : (Field) field;
 	}
 	
 
@@ -111,13 +172,7 @@ public abstract class ReflectionUtils {
 	 * @return
 	 */
 	public static Field getField(Object target, String name) {
-		for (Class<?> superClass = target.getClass(); superClass != Object.class; superClass = superClass.getSuperclass()) {
-			try {
-				return superClass.getDeclaredField(name);
-			} catch (NoSuchFieldException e) {
-			}
-		}
-		return null;
+		return getField(target.getClass(), name);
 	}
 	
 	/**
@@ -231,6 +286,39 @@ public abstract class ReflectionUtils {
 	public static Method getMethod(Class<?> clazz, String name) {
 		return getMethod(clazz, name, new Class<?>[0]);
 	}
+
+	/**
+	 * Attempt to get a {@link Method} on the supplied class with the supplied name
+	 * and parameter types. Searches all superclasses up to {@code Object}, and
+	 * the interfaces when the class is an interface; the result is cached.
+	 * <p>Returns {@code null} if no {@link Method} can be found.
+	 * @param clazz the class to introspect
+	 * @param name the name of the method
+	 * @param paramTypes the parameter types of the method
+	 * @return the Method object, or {@code null} if none found
+	 */
+	public static Method getMethod(Class<?> clazz, String name, Class<?>... paramTypes) {
+		MethodKey key = new MethodKey(name, paramTypes);
+		ConcurrentMap<MethodKey, Object> methods = MEMBERS.get(clazz).methods;
+		Object method = methods.get(key);
+		if (method == null) {
+			method = findMethod(clazz, name, key.parameterTypes);
+			methods.putIfAbsent(key, method == null ? MISSING : method);
+		}
+		return method == MISSING ? null : (Method) method;
+	}
+
+	private static Method findMethod(Class<?> clazz, String name, Class<?>[] paramTypes) {
+		for (Class<?> searchType = clazz; searchType != null; searchType = searchType.getSuperclass()) {
+			Method[] methods = searchType.isInterface() ? searchType.getMethods() : searchType.getDeclaredMethods();
+			for (Method method : methods) {
+				if (name.equals(method.getName()) && Arrays.equals(paramTypes, method.getParameterTypes())) {
+					return method;
+				}
+			}
+		}
+		return null;
+	}
 	
 	/**
 	 * 
@@ -259,7 +347,7 @@ public abstract class ReflectionUtils {
 	public static Method getAccessibleMethod(Object target,String name,Class<?>... paramTypes ) {
 		Method method =  getMethod(target.getClass(),name,paramTypes);
 		if(method != null){
-			method.setAccessible(true);
+			makeAccessible(method);
 		}
 		return method;
 	}
@@ -301,12 +389,14 @@ public abstract class ReflectionUtils {
 	 * 直接调用对象方法, 无视private/protected修饰符. 用于一次性调用的情况.
 	 */
 	public static Object invokeMethod(String methodName, Object target, Class<?>[] parameterTypes, Object[] args) {
-		Method method = getMethod(target.getClass(), methodName, parameterTypes);
+		MethodHandle invoker = getInvoker(target.getClass(), new MethodKey(methodName, parameterTypes));
+		if (invoker == null) {
+			throw new IllegalArgumentException("Could not get method [" + methodName + "] on target [" + target + "]");
+		}
 		try {
-			makeAccessible(method);
-			return method.invoke(target, args);
-		} catch (Exception ex) {
-			handleReflectionException(ex);
+			return (Object) invoker.invokeExact(target, args == null ? new Object[0] : args);
+		} catch (Throwable ex) {
+			rethrowRuntimeException(ex);
 		}
 		throw new IllegalStateException("Should never get here");
 	}
@@ -315,8 +405,62 @@ public abstract class ReflectionUtils {
 	 * 调用Getter方法.
 	 */
 	public static Object invokeGetterMethod(String propertyName, Object target) {
-		String getterMethodName = "get" + StringUtils.capitalize(propertyName);
-		return invokeMethod( getterMethodName, target, new Class[] {}, new Object[] {});
+		MethodHandle getter = getGetter(target.getClass(), propertyName);
+		if (getter == null) {
+			throw new IllegalArgumentException("Could not get getter of [" + propertyName + "] on target [" + target + "]");
+		}
+		try {
+			return (Object) getter.invokeExact(target);
+		} catch (Throwable ex) {
+			rethrowRuntimeException(ex);
+		}
+		throw new IllegalStateException("Should never get here");
+	}
+
+	/**
+	 * @return a method handle invoking the method as <code>(Object, Object[])Object</code>,
+	 *         resolved once per class, null if there is no such method
+	 */
+	private static MethodHandle getInvoker(Class<?> clazz, MethodKey key) {
+		ConcurrentMap<MethodKey, Object> invokers = MEMBERS.get(clazz).invokers;
+		Object invoker = invokers.get(key);
+		if (invoker == null) {
+			Method method = getMethod(clazz, key.name, key.parameterTypes);
+			invoker = method == null ? MISSING : unreflect(method)
+					.asSpreader(Object[].class, key.parameterTypes.length)
+					.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+			invokers.putIfAbsent(key, invoker);
+		}
+		return invoker == MISSING ? null : (MethodHandle) invoker;
+	}
+
+	/**
+	 * @return a method handle invoking the getter of the property as <code>(Object)Object</code>,
+	 *         resolved once per class, null if there is no such getter
+	 */
+	private static MethodHandle getGetter(Class<?> clazz, String propertyName) {
+		ConcurrentMap<String, Object> getters = MEMBERS.get(clazz).getters;
+		Object getter = getters.get(propertyName);
+		if (getter == null) {
+			Method method = getMethod(clazz, "get" + StringUtils.capitalize(propertyName));
+			getter = method == null ? MISSING : unreflect(method).asType(GETTER_TYPE);
+			getters.putIfAbsent(propertyName, getter);
+		}
+		return getter == MISSING ? null : (MethodHandle) getter;
+	}
+
+	/**
+	 * @return a handle of the method taking the target as first argument, ignored by static methods
+	 */
+	private static MethodHandle unreflect(Method method) {
+		makeAccessible(method);
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			return Modifier.isStatic(method.getModifiers()) ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+		} catch (IllegalAccessException ex) {
+			handleReflectionException(ex);
+			throw new IllegalStateException("Should never get here");
+		}
 	}
 	
 	public static Object invokeGetterMethod( Object target,String propertyName) {
@@ -677,16 +821,41 @@ public abstract class ReflectionUtils {
 			throw new IllegalArgumentException("Destination class [" + dest.getClass().getName() +
 					"] must be same or subclass as source class [" + src.getClass().getName() + "]");
 		}
-		doWithFields(src.getClass(), new FieldCallback() {
-			@Override
-			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-				makeAccessible(field);
-				Object srcValue = field.get(src);
-				field.set(dest, srcValue);
+		try {
+			for (MethodHandle copier : COPY_PLANS.get(src.getClass())) {
+				copier.invokeExact(dest, src);
 			}
-		}, COPYABLE_FIELDS);
+		} catch (Throwable ex) {
+			rethrowRuntimeException(ex);
+		}
 	}
 
+	/**
+	 * Copy plans of {@link #shallowCopyFieldState(Object, Object)}: one handle
+	 * per {@link #COPYABLE_FIELDS copyable field} of the class and its superclasses,
+	 * taking <code>(dest, src)</code>. Each one is the setter of the field with
+	 * its getter applied to the second argument, so values of primitive fields
+	 * are copied without being boxed.
+	 */
+	private static final ClassValue<MethodHandle[]> COPY_PLANS = new ClassValue<MethodHandle[]>() {
+		@Override
+		protected MethodHandle[] computeValue(Class<?> type) {
+			final List<MethodHandle> copiers = new ArrayList<MethodHandle>();
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final MethodType copierType = MethodType.methodType(void.class, Object.class, Object.class);
+			doWithFields(type, new FieldCallback() {
+				@Override
+				public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
+					makeAccessible(field);
+					MethodHandle getter = lookup.unreflectGetter(field);
+					MethodHandle setter = lookup.unreflectSetter(field);
+					copiers.add(MethodHandles.filterArguments(setter, 1, getter).asType(copierType));
+				}
+			}, COPYABLE_FIELDS);
+			return copiers.toArray(new MethodHandle[copiers.size()]);
+		}
+	};
+
 
 	/**
 	 * Action to take on each method.
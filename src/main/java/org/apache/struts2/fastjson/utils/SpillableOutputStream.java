@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * Output buffer which keeps its content in memory up to a threshold and spills
+ * everything to a temporary file beyond it, so the size of a response is known
+ * before it is sent without holding huge payloads on the heap.
+ * <p/>
+ * All instances share a per-JVM budget of in-memory bytes: once it is exhausted,
+ * new content goes to disk even if the threshold of the buffer is not reached.
+ * The budget and the temporary directory are configured with the constants
+ * <code>struts.fastjson.buffer.maxMemory</code> and <code>struts.fastjson.buffer.tempDir</code>.
+ * <p/>
+ * Instances are not thread safe and must be {@link #release() released} after use.
+ */
+public class SpillableOutputStream extends OutputStream {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpillableOutputStream.class);
+
+	private static final int MIN_BLOCK_SIZE = 4096;
+	private static final int MAX_BLOCK_SIZE = 65536;
+
+	private static final AtomicLong MEMORY = new AtomicLong();
+	private static volatile long maxMemory = 64L * 1024 * 1024;
+	private static volatile File tempDirectory;
+
+	private final int threshold;
+	private final MessageDigest digest;
+
+	private final List<byte[]> blocks = new ArrayList<byte[]>();
+	private byte[] current;
+	private int position;
+	private long reserved;
+	private long count;
+
+	private File file;
+	private OutputStream fileOut;
+	private String etag;
+
+	/**
+	 * @param threshold maximum number of bytes kept in memory by this buffer
+	 * @param computeETag whether a digest of the content is computed, see {@link #getETag()}
+	 */
+	public SpillableOutputStream(int threshold, boolean computeETag) {
+		this.threshold = threshold;
+		this.digest = computeETag ? newDigest() : null;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Inject(value = "struts.fastjson.buffer.maxMemory", required = false)
+	public static void setMaxMemory(String maxMemory) {
+		SpillableOutputStream.maxMemory = Long.parseLong(maxMemory.trim());
+	}
+
+	@Inject(value = "struts.fastjson.buffer.tempDir", required = false)
+	public static void setTempDirectory(String tempDirectory) {
+		SpillableOutputStream.tempDirectory = tempDirectory.trim().length() == 0 ? null : new File(tempDirectory.trim());
+	}
+
+	/**
+	 * @return bytes currently held in memory by all buffers of the JVM
+	 */
+	public static long getMemoryInUse() {
+		return MEMORY.get();
+	}
+
+	private static boolean reserve(long bytes) {
+		for (;;) {
+			long used = MEMORY.get();
+			if (used + bytes > maxMemory) {
+				return false;
+			}
+			if (MEMORY.compareAndSet(used, used + bytes)) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (digest != null) {
+			digest.update((byte) b);
+		}
+		count++;
+		if (fileOut != null) {
+			fileOut.write(b);
+			return;
+		}
+		if (current == null || position == current.length) {
+			if (!nextBlock()) {
+				fileOut.write(b);
+				return;
+			}
+		}
+		current[position++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (digest != null) {
+			digest.update(b, off, len);
+		}
+		count += len;
+		while (len > 0) {
+			if (fileOut != null) {
+				fileOut.write(b, off, len);
+				return;
+			}
+			if (current == null || position == current.length) {
+				if (!nextBlock()) {
+					continue;
+				}
+			}
+			int n = Math.min(len, current.length - position);
+			System.arraycopy(b, off, current, position, n);
+			position += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Allocates the next memory block, or spills to disk when the buffer would
+	 * exceed its threshold or the JVM wide budget.
+	 *
+	 * @return false if the content has been spilled
+	 */
+	private boolean nextBlock() throws IOException {
+		int size = current == null ? MIN_BLOCK_SIZE : Math.min(current.length * 2, MAX_BLOCK_SIZE);
+		if (reserved + size > threshold || !reserve(size)) {
+			spill();
+			return false;
+		}
+		reserved += size;
+		current = new byte[size];
+		position = 0;
+		blocks.add(current);
+		return true;
+	}
+
+	private void spill() throws IOException {
+		file = File.createTempFile("fastjson", ".json", tempDirectory);
+		fileOut = new BufferedOutputStream(new FileOutputStream(file), 8192);
+		writeBlocks(fileOut);
+		LOG.debug("Spilled JSON output buffer to {}", file);
+		freeBlocks();
+	}
+
+	private void writeBlocks(OutputStream out) throws IOException {
+		for (byte[] block : blocks) {
+			out.write(block, 0, block == current ? position : block.length);
+		}
+	}
+
+	private void freeBlocks() {
+		blocks.clear();
+		current = null;
+		position = 0;
+		MEMORY.addAndGet(-reserved);
+		reserved = 0;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (fileOut != null) {
+			fileOut.flush();
+		}
+	}
+
+	/**
+	 * Flushes spilled content, the buffer keeps its content until {@link #release()}.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * @return true if the content has been written to a temporary file
+	 */
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+	/**
+	 * @return a strong entity tag of the content written so far, null if disabled
+	 */
+	public String getETag() {
+		if (digest == null) {
+			return null;
+		}
+		if (etag == null) {
+			byte[] hash = digest.digest();
+			StringBuilder builder = new StringBuilder(hash.length * 2 + 2).append('"');
+			for (byte b : hash) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			etag = builder.append('"').toString();
+		}
+		return etag;
+	}
+
+	/**
+	 * Writes the whole content to the given stream.
+	 *
+	 * @param out the destination
+	 * @throws IOException in case of IO errors
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (file == null) {
+			writeBlocks(out);
+			return;
+		}
+		fileOut.flush();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			JSONOutputUtils.transferTo(in.getChannel(), 0, count, out);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Opens a stream reading the content written so far, the buffer must not be
+	 * written to or released while the stream is in use.
+	 *
+	 * @return a new stream over the content
+	 * @throws IOException in case of IO errors
+	 */
+	public InputStream openInputStream() throws IOException {
+		if (file != null) {
+			fileOut.flush();
+			return new FileInputStream(file);
+		}
+		return new InputStream() {
+
+			private int block;
+			private int offset;
+
+			@Override
+			public int read() throws IOException {
+				byte[] single = new byte[1];
+				return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				while (block < blocks.size()) {
+					byte[] source = blocks.get(block);
+					int limit = source == current ? position : source.length;
+					if (offset < limit) {
+						int n = Math.min(len, limit - offset);
+						System.arraycopy(source, offset, b, off, n);
+						offset += n;
+						return n;
+					}
+					block++;
+					offset = 0;
+				}
+				return -1;
+			}
+
+		};
+	}
+
+	/**
+	 * Frees the memory and deletes the temporary file, can be called several times.
+	 */
+	public void release() {
+		freeBlocks();
+		if (fileOut != null) {
+			try {
+				fileOut.close();
+			} catch (IOException e) {
+				LOG.debug(e.getMessage(), e);
+			}
+			fileOut = null;
+		}
+		if (file != null && !file.delete()) {
+			LOG.warn("Could not delete temporary file {}", file);
+		}
+		file = null;
+	}
+
+}
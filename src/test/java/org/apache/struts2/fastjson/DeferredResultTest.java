@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.struts2.fastjson.annotation.Deferred;
+import org.junit.Test;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * Deferred getters resolved ahead must be written as fastjson writes them
+ * without being deferred: same names, order, formats and features.
+ */
+public class DeferredResultTest {
+
+	private static final Date BORN = new Date(86400000L * 365);
+
+	public static class Plain {
+
+		private String alpha = "a";
+		@JSONField(format = "yyyy-MM-dd")
+		private Date born = BORN;
+		@JSONField(name = "user_age")
+		private int age = 42;
+		private String zed = "z";
+
+		public String getAlpha() {
+			return alpha;
+		}
+
+		public Date getBorn() {
+			return born;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public String getZed() {
+			return zed;
+		}
+
+	}
+
+	public static class Annotated {
+
+		final AtomicInteger bornCalls = new AtomicInteger();
+		final AtomicInteger ageCalls = new AtomicInteger();
+
+		private String alpha = "a";
+		@JSONField(format = "yyyy-MM-dd")
+		private Date born = BORN;
+		@JSONField(name = "user_age")
+		private int age = 42;
+		private String zed = "z";
+
+		public String getAlpha() {
+			return alpha;
+		}
+
+		@Deferred
+		public Date getBorn() {
+			bornCalls.incrementAndGet();
+			return born;
+		}
+
+		@Deferred
+		public int getAge() {
+			ageCalls.incrementAndGet();
+			return age;
+		}
+
+		public String getZed() {
+			return zed;
+		}
+
+	}
+
+	@Test
+	public void deferredGettersAreWrittenInPlace() throws Exception {
+		byte[] expected = execute(new Plain(), false);
+		String text = new String(expected, "UTF-8");
+		assertTrue(text, text.startsWith("{\"alpha\":\"a\",\"born\":\"")
+				&& text.endsWith("\",\"user_age\":\"42\",\"zed\":\"z\"}"));
+		assertArrayEquals(expected, execute(new Plain(), true));
+
+		Annotated annotated = new Annotated();
+		assertArrayEquals(expected, execute(annotated, true));
+		assertEquals(1, annotated.bornCalls.get());
+		assertEquals(1, annotated.ageCalls.get());
+	}
+
+	private static byte[] execute(Object root, boolean resolveDeferred) throws Exception {
+		FastJSONResult result = ResultFixture.newResult();
+		result.setResolveDeferred(resolveDeferred);
+		ResultFixture.Response response = new ResultFixture.Response();
+		result.execute(ResultFixture.invocation(root, ResultFixture.request(false), response));
+		return response.body.toByteArray();
+	}
+
+}
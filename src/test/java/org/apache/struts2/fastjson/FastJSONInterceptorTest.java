@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.StrutsStatics;
+import org.apache.struts2.interceptor.SessionAware;
+import org.junit.After;
+import org.junit.Test;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+
+/**
+ * Binding of JSON request bodies: keys guarded like the params interceptor
+ * guards parameters, and compressed bodies bounded once inflated.
+ */
+public class FastJSONInterceptorTest {
+
+	public static class BindAction extends ActionSupport implements SessionAware {
+
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+		private Map<String, Object> session;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Map<String, Object> getSession() {
+			return session;
+		}
+
+		@Override
+		public void setSession(Map<String, Object> session) {
+			this.session = session;
+		}
+
+	}
+
+	private final ResultFixture.Response response = new ResultFixture.Response();
+
+	@After
+	public void clearContext() {
+		ActionContext.setContext(null);
+	}
+
+	@Test
+	public void protectedKeysLeaveTheActionUntouched() throws Exception {
+		BindAction action = new BindAction();
+		String result = intercept(new FastJSONInterceptor(), action, json("{\"class\":{\"classLoader\":{\"x\":1}},"
+				+ "\"session\":{\"user\":\"admin\"},\"actionErrors\":[\"forged\"],"
+				+ "\"fieldErrors\":{\"name\":[\"forged\"]},\"name\":\"bob\"}"), null);
+		assertEquals(Action.SUCCESS, result);
+		assertEquals("bob", action.getName());
+		assertNull(action.getSession());
+		assertTrue(action.getActionErrors().isEmpty());
+		assertTrue(action.getFieldErrors().isEmpty());
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+	}
+
+	@Test
+	public void gzipBombExceedingTheInflatedSizeIsRefused() throws Exception {
+		FastJSONInterceptor interceptor = new FastJSONInterceptor();
+		interceptor.setMaxInflatedSize(1024 * 1024);
+		interceptor.setMaxInflateRatio(0);
+		BindAction action = new BindAction();
+		assertEquals(Action.NONE, intercept(interceptor, action, gzip(bomb(4 * 1024 * 1024)), "gzip"));
+		assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.status);
+		assertNull(action.getName());
+	}
+
+	@Test
+	public void gzipBombExceedingTheInflateRatioIsRefused() throws Exception {
+		BindAction action = new BindAction();
+		assertEquals(Action.NONE, intercept(new FastJSONInterceptor(), action, gzip(bomb(4 * 1024 * 1024)), "gzip"));
+		assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.status);
+		assertNull(action.getName());
+	}
+
+	@Test
+	public void gzipBodyWithinTheLimitsIsBound() throws Exception {
+		BindAction action = new BindAction();
+		assertEquals(Action.SUCCESS, intercept(new FastJSONInterceptor(), action, gzip(json("{\"name\":\"bob\"}")),
+				"gzip"));
+		assertEquals("bob", action.getName());
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+	}
+
+	private String intercept(FastJSONInterceptor interceptor, Object action, byte[] body, String contentEncoding)
+			throws Exception {
+		Map<String, Object> context = new HashMap<String, Object>();
+		context.put(StrutsStatics.HTTP_REQUEST, request(body, contentEncoding));
+		context.put(StrutsStatics.HTTP_RESPONSE, response.servletResponse);
+		ActionContext.setContext(new ActionContext(context));
+		MockActionInvocation invocation = new MockActionInvocation();
+		invocation.setInvocationContext(ActionContext.getContext());
+		invocation.setAction(action);
+		invocation.setResultCode(Action.SUCCESS);
+		return interceptor.intercept(invocation);
+	}
+
+	/**
+	 * @return a JSON body, the value of <code>name</code> padded to the given size
+	 */
+	private static byte[] bomb(int size) {
+		char[] padding = new char[size];
+		Arrays.fill(padding, 'a');
+		return json("{\"name\":\"" + new String(padding) + "\"}");
+	}
+
+	private static byte[] json(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(compressed);
+		out.write(body);
+		out.close();
+		return compressed.toByteArray();
+	}
+
+	private static HttpServletRequest request(final byte[] body, final String contentEncoding) {
+		final ByteArrayInputStream in = new ByteArrayInputStream(body);
+		final ServletInputStream input = new ServletInputStream() {
+			@Override
+			public int read() {
+				return in.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				return in.read(b, off, len);
+			}
+
+			@Override
+			public boolean isFinished() {
+				return in.available() == 0;
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setReadListener(ReadListener readListener) {
+			}
+		};
+		return (HttpServletRequest) Proxy.newProxyInstance(FastJSONInterceptorTest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getContentType".equals(name)) {
+							return "application/json; charset=UTF-8";
+						}
+						if ("getCharacterEncoding".equals(name)) {
+							return "UTF-8";
+						}
+						if ("getContentLength".equals(name)) {
+							return body.length;
+						}
+						if ("getInputStream".equals(name)) {
+							return input;
+						}
+						if ("getHeader".equals(name)) {
+							return "Content-Encoding".equalsIgnoreCase((String) args[0]) ? contentEncoding : null;
+						}
+						return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.fastjson.metrics.AllocationCounter;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.opensymphony.xwork2.ActionInvocation;
+
+/**
+ * Guards the allocation rate of {@link FastJSONResult#execute(ActionInvocation)}:
+ * the bytes allocated by the request thread per execution must stay within the
+ * multiple of the uncompressed payload checked in as
+ * <code>allocation-budget.properties</code>. A budget is raised deliberately,
+ * with the change making the copy, never to get a build green.
+ */
+public class FastJSONResultAllocationTest {
+
+	private static final int WARMUP = 300;
+	private static final int RUNS = 100;
+	private static final int ROWS = 500;
+
+	private static final Properties BUDGET = new Properties();
+
+	@BeforeClass
+	public static void loadBudget() throws Exception {
+		Assume.assumeTrue("the JVM does not count allocations per thread", AllocationCounter.isSupported());
+		InputStream in = FastJSONResultAllocationTest.class.getResourceAsStream("allocation-budget.properties");
+		try {
+			BUDGET.load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void beans() throws Exception {
+		check("beans", TestBean.list(ROWS, false));
+	}
+
+	@Test
+	public void cjkBeans() throws Exception {
+		check("cjk", TestBean.list(ROWS, true));
+	}
+
+	@Test
+	public void maps() throws Exception {
+		check("maps", TestBean.maps(ROWS));
+	}
+
+	@Test
+	public void jsonp() throws Exception {
+		FastJSONResult result = ResultFixture.newResult();
+		result.setCallbackParameter("callback");
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("callback", "handle");
+		ResultFixture.Response response = new ResultFixture.Response();
+		ActionInvocation invocation = ResultFixture.invocation(TestBean.list(ROWS, false),
+				ResultFixture.request(Collections.<String, String>emptyMap(), parameters), response);
+		assertWithinBudget("jsonp", result, invocation, response, payloadSize(TestBean.list(ROWS, false)));
+		assertTrue(response.text().startsWith("handle("));
+	}
+
+	private void check(String name, Object payload) throws Exception {
+		int size = payloadSize(payload);
+
+		FastJSONResult plain = ResultFixture.newResult();
+		ResultFixture.Response response = new ResultFixture.Response();
+		assertWithinBudget(name + ".plain", plain, ResultFixture.invocation(payload, ResultFixture.request(false), response),
+				response, size);
+
+		FastJSONResult gzip = ResultFixture.newResult();
+		gzip.setEnableGZIP(true);
+		response = new ResultFixture.Response();
+		assertWithinBudget(name + ".gzip", gzip, ResultFixture.invocation(payload, ResultFixture.request(true), response),
+				response, size);
+		assertEquals("gzip", response.headers.get("Content-Encoding"));
+	}
+
+	/**
+	 * @return bytes of the uncompressed response body
+	 */
+	private static int payloadSize(Object payload) throws Exception {
+		ResultFixture.Response response = new ResultFixture.Response();
+		ResultFixture.newResult().execute(ResultFixture.invocation(payload, ResultFixture.request(false), response));
+		return response.body.size();
+	}
+
+	private static void assertWithinBudget(String key, FastJSONResult result, ActionInvocation invocation,
+			ResultFixture.Response response, int payloadSize) throws Exception {
+		String budget = BUDGET.getProperty(key);
+		if (budget == null) {
+			fail("no allocation budget for " + key);
+		}
+		for (int i = 0; i < WARMUP; i++) {
+			response.reset();
+			result.execute(invocation);
+		}
+		long start = AllocationCounter.getAllocatedBytes();
+		for (int i = 0; i < RUNS; i++) {
+			response.reset();
+			result.execute(invocation);
+		}
+		double ratio = (double) (AllocationCounter.getAllocatedBytes() - start) / RUNS / payloadSize;
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+		assertTrue(response.body.size() > 0);
+		assertTrue(String.format("%s allocates %.2f times its %d byte payload per execution, the budget is %s", key,
+				ratio, payloadSize, budget), ratio <= Double.parseDouble(budget));
+	}
+
+}
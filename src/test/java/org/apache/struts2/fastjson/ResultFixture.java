@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.StrutsStatics;
+
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionProxy;
+import com.opensymphony.xwork2.util.CompoundRoot;
+import com.opensymphony.xwork2.util.ValueStack;
+
+/**
+ * Runs results outside of a container: the servlet request, response and value
+ * stack are dynamic proxies answering what the results ask for, the body is
+ * kept in memory.
+ */
+final class ResultFixture {
+
+	private ResultFixture() {
+	}
+
+	/**
+	 * @return a result configured as the container injects it, with the
+	 *         default <code>struts.i18n.encoding</code>
+	 */
+	static FastJSONResult newResult() {
+		FastJSONResult result = new FastJSONResult();
+		result.setDefaultEncoding("UTF-8");
+		return result;
+	}
+
+	/**
+	 * @param headers request headers, by name
+	 * @param parameters request parameters, by name
+	 * @return a request which does not support async processing
+	 */
+	static HttpServletRequest request(final Map<String, String> headers, final Map<String, String> parameters) {
+		return proxy(HttpServletRequest.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getHeader".equals(method.getName())) {
+					return headers.get(args[0]);
+				}
+				if ("getParameter".equals(method.getName())) {
+					return parameters.get(args[0]);
+				}
+				if ("getHeaders".equals(method.getName())) {
+					String value = headers.get(args[0]);
+					return Collections.enumeration(value == null ? Collections.<String>emptyList()
+							: Collections.singletonList(value));
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	/**
+	 * @param gzip whether the request accepts gzip
+	 * @return a request with no parameters
+	 */
+	static HttpServletRequest request(boolean gzip) {
+		Map<String, String> headers = new HashMap<String, String>();
+		if (gzip) {
+			headers.put("Accept-Encoding", "gzip, deflate");
+		}
+		return request(headers, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * @param root the object found on top of the value stack
+	 * @param response receives the result
+	 * @param request the current request
+	 * @return an invocation of the action <code>/test/payload</code>
+	 */
+	static ActionInvocation invocation(final Object root, HttpServletRequest request, Response response) {
+		Map<String, Object> context = new HashMap<String, Object>();
+		context.put(StrutsStatics.HTTP_REQUEST, request);
+		context.put(StrutsStatics.HTTP_RESPONSE, response.servletResponse);
+		MockActionProxy actionProxy = new MockActionProxy();
+		actionProxy.setNamespace("/test");
+		actionProxy.setActionName("payload");
+		MockActionInvocation invocation = new MockActionInvocation();
+		invocation.setInvocationContext(new ActionContext(context));
+		invocation.setProxy(actionProxy);
+		invocation.setStack(proxy(ValueStack.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("peek".equals(method.getName())) {
+					return root;
+				}
+				if ("getRoot".equals(method.getName())) {
+					CompoundRoot compoundRoot = new CompoundRoot();
+					compoundRoot.add(root);
+					return compoundRoot;
+				}
+				return defaultValue(method);
+			}
+		}));
+		return invocation;
+	}
+
+	/**
+	 * In-memory response, reusable after {@link #reset()}.
+	 */
+	static final class Response {
+
+		final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+		final Map<String, String> headers = new HashMap<String, String>();
+		int status = HttpServletResponse.SC_OK;
+		final HttpServletResponse servletResponse;
+
+		Response() {
+			final ServletOutputStream out = new ServletOutputStream() {
+				@Override
+				public void write(int b) {
+					body.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					body.write(b, off, len);
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+				}
+			};
+			servletResponse = proxy(HttpServletResponse.class, new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+					String name = method.getName();
+					if ("getOutputStream".equals(name)) {
+						return out;
+					}
+					if ("getWriter".equals(name)) {
+						return new PrintWriter(out);
+					}
+					if ("setHeader".equals(name) || "addHeader".equals(name)) {
+						headers.put((String) args[0], (String) args[1]);
+					} else if ("setStatus".equals(name) || "sendError".equals(name)) {
+						status = (Integer) args[0];
+					} else if ("setContentType".equals(name)) {
+						headers.put("Content-Type", (String) args[0]);
+					} else if ("getCharacterEncoding".equals(name)) {
+						return "UTF-8";
+					}
+					return defaultValue(method);
+				}
+			});
+		}
+
+		void reset() {
+			body.reset();
+			headers.clear();
+			status = HttpServletResponse.SC_OK;
+		}
+
+		String text() throws IOException {
+			return body.toString("UTF-8");
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(ResultFixture.class.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getDeclaringClass() == Object.class) {
+							if ("equals".equals(method.getName())) {
+								return proxy == args[0];
+							}
+							return "hashCode".equals(method.getName()) ? (Object) System.identityHashCode(proxy)
+									: "Mock" + type.getSimpleName();
+						}
+						return handler.invoke(proxy, method, args);
+					}
+				});
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.struts2.fastjson.utils.JSONSerializerUtils;
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+/**
+ * Runs results of different configurations from many threads at once, the way
+ * Struts runs them: a result instance per execution, configured with the same
+ * parameters, so the compiled patterns and the per-class caches are shared.
+ * Every output must equal the one of a single-threaded run, and no shared
+ * state may change.
+ */
+public class SharedResultConcurrencyTest {
+
+	private static final int THREADS = 16;
+	private static final int ITERATIONS = 150;
+	private static final int ROWS = 50;
+
+	/**
+	 * One result configuration and the request it answers.
+	 */
+	private abstract static class Profile {
+
+		final String name;
+		final Object root;
+		final boolean gzip;
+		final String callback;
+
+		Profile(String name, Object root, boolean gzip, String callback) {
+			this.name = name;
+			this.root = root;
+			this.gzip = gzip;
+			this.callback = callback;
+		}
+
+		abstract void configure(FastJSONResult result);
+
+		FastJSONResult newResult() {
+			FastJSONResult result = ResultFixture.newResult();
+			configure(result);
+			return result;
+		}
+
+		String execute() throws Exception {
+			Map<String, String> headers = new HashMap<String, String>();
+			if (gzip) {
+				headers.put("Accept-Encoding", "gzip");
+			}
+			Map<String, String> parameters = callback == null ? Collections.<String, String>emptyMap()
+					: Collections.singletonMap("callback", callback);
+			HttpServletRequest request = ResultFixture.request(headers, parameters);
+			ResultFixture.Response response = new ResultFixture.Response();
+			newResult().execute(ResultFixture.invocation(root, request, response));
+			return gzip ? gunzip(response.body.toByteArray()) : response.text();
+		}
+
+	}
+
+	private static List<Profile> profiles() {
+		final TestPage page = TestPage.of(ROWS, false);
+		List<Profile> profiles = new ArrayList<Profile>();
+		profiles.add(new Profile("default", page, false, null) {
+			@Override
+			void configure(FastJSONResult result) {
+			}
+		});
+		profiles.add(new Profile("excludes", page, false, null) {
+			@Override
+			void configure(FastJSONResult result) {
+				result.setExcludeProperties("secret,title");
+				result.setDefaultDateFormat("yyyy-MM-dd");
+			}
+		});
+		profiles.add(new Profile("includes", page, false, null) {
+			@Override
+			void configure(FastJSONResult result) {
+				result.setIncludeProperties("rows,total");
+				result.setExcludeNullProperties(true);
+				result.setDefaultDateFormat("yyyyMMddHHmmss");
+			}
+		});
+		profiles.add(new Profile("wildcards-gzip-jsonp", page, true, "handle") {
+			@Override
+			void configure(FastJSONResult result) {
+				result.setExcludeWildcards("sec*");
+				result.setIgnoreHierarchy(false);
+				result.setEnableGZIP(true);
+				result.setCallbackParameter("callback");
+			}
+		});
+		profiles.add(new Profile("cjk", TestBean.list(ROWS, true), false, null) {
+			@Override
+			void configure(FastJSONResult result) {
+				result.setExcludeNullProperties(true);
+				result.setDefaultDateFormat("yyyy年MM月dd日");
+			}
+		});
+		profiles.add(new Profile("wrapped", page, false, null) {
+			@Override
+			void configure(FastJSONResult result) {
+				result.setExcludeProperties("secret");
+				result.setWrapPrefix("{\"data\":");
+				result.setWrapSuffix("}");
+			}
+		});
+		return profiles;
+	}
+
+	@Test
+	public void sharedConfigurationsGiveSingleThreadedOutput() throws Exception {
+		final List<Profile> profiles = profiles();
+		final Map<String, String> expected = new HashMap<String, String>();
+		Map<String, int[]> patternSizes = new HashMap<String, int[]>();
+		for (Profile profile : profiles) {
+			expected.put(profile.name, profile.execute());
+			patternSizes.put(profile.name, patternSizes(profile.newResult()));
+		}
+		assertSingleThreadedOutput(expected);
+		String dateFormat = JSON.DEFFAULT_DATE_FORMAT;
+		SerializerFeature[] features = JSONSerializerUtils.getGenerateFeatures();
+
+		final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < ITERATIONS; i++) {
+							Profile profile = profiles.get((offset + i) % profiles.size());
+							String output = profile.execute();
+							if (!output.equals(expected.get(profile.name))) {
+								failures.add(profile.name + " differs: " + output);
+							}
+						}
+					} catch (Throwable e) {
+						failures.add(e.toString());
+					} finally {
+						done.countDown();
+					}
+				}
+			}, "stress-" + t);
+			thread.start();
+		}
+		start.countDown();
+		assertTrue("stress threads did not finish", done.await(2, TimeUnit.MINUTES));
+
+		assertTrue(failures.size() + " failures, first: " + failures.peek(), failures.isEmpty());
+		assertEquals(dateFormat, JSON.DEFFAULT_DATE_FORMAT);
+		assertArrayEquals(features, JSONSerializerUtils.getGenerateFeatures());
+		for (Profile profile : profiles) {
+			assertArrayEquals(profile.name, patternSizes.get(profile.name), patternSizes(profile.newResult()));
+		}
+	}
+
+	@Test
+	public void buildFiltersKeepsTheGivenLists() throws Exception {
+		final List<Pattern> excludes = Collections.singletonList(Pattern.compile("secret"));
+		final List<Pattern> includes = new ArrayList<Pattern>();
+		final TestPage page = TestPage.of(1, false);
+		final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < ITERATIONS * 10; i++) {
+							JSONSerializerUtils.buildFilters(page, excludes, includes, true, true, true, false);
+						}
+					} catch (Throwable e) {
+						failures.add(e.toString());
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		assertTrue(done.await(1, TimeUnit.MINUTES));
+		assertTrue(String.valueOf(failures.peek()), failures.isEmpty());
+		assertEquals(1, excludes.size());
+		assertTrue(includes.isEmpty());
+	}
+
+	private static void assertSingleThreadedOutput(Map<String, String> expected) {
+		for (String output : expected.values()) {
+			assertFalse(output, output.contains("internalCode"));
+		}
+		assertFalse(expected.get("excludes").contains("\"secret\""));
+		assertFalse(expected.get("excludes").contains("\"title\""));
+		assertTrue(expected.get("excludes").contains("\"2017-07-14\""));
+		assertTrue(expected.get("includes").startsWith("{\"rows\":"));
+		assertFalse(expected.get("includes").contains("\"remark\":null"));
+		assertTrue(expected.get("includes").contains("\"20170714"));
+		assertTrue(expected.get("wildcards-gzip-jsonp").startsWith("handle("));
+		assertFalse(expected.get("wildcards-gzip-jsonp").contains("s3cr3t"));
+		assertTrue(expected.get("cjk").contains("年"));
+		assertTrue(expected.get("wrapped").startsWith("{\"data\":{"));
+		assertTrue(expected.get("default").contains("\"secret\":\"s3cr3t\""));
+	}
+
+	private static int[] patternSizes(FastJSONResult result) {
+		return new int[] { result.excludeProperties == null ? -1 : result.excludeProperties.size(),
+				result.includeProperties == null ? -1 : result.includeProperties.size() };
+	}
+
+	private static String gunzip(byte[] body) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(body));
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 8);
+			byte[] buffer = new byte[8192];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+}
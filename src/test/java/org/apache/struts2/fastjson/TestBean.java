@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Payload of the result tests, shaped like a typical list page row.
+ */
+public class TestBean {
+
+	private long id;
+	private String name;
+	private String description;
+	private double price;
+	private Date created;
+	private String remark;
+	private List<String> tags;
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public void setPrice(double price) {
+		this.price = price;
+	}
+
+	public Date getCreated() {
+		return created;
+	}
+
+	public void setCreated(Date created) {
+		this.created = created;
+	}
+
+	public String getRemark() {
+		return remark;
+	}
+
+	public void setRemark(String remark) {
+		this.remark = remark;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public void setTags(List<String> tags) {
+		this.tags = tags;
+	}
+
+	/**
+	 * @param count number of beans
+	 * @param cjk whether the texts are Chinese
+	 * @return beans with fixed content, every third one without remark
+	 */
+	public static List<TestBean> list(int count, boolean cjk) {
+		List<TestBean> beans = new ArrayList<TestBean>(count);
+		for (int i = 0; i < count; i++) {
+			TestBean bean = new TestBean();
+			bean.setId(i);
+			bean.setName(cjk ? "商品名称" + i : "product " + i);
+			bean.setDescription(cjk ? "这是一段用于测试序列化的商品描述，包含“引号”和换行\n" + i
+					: "A description used to test the serialization, with \"quotes\" and a line break\n" + i);
+			bean.setPrice(i * 1.25d);
+			bean.setCreated(new Date(1500000000000L + i * 60000L));
+			bean.setRemark(i % 3 == 0 ? null : (cjk ? "备注" : "remark"));
+			bean.setTags(Arrays.asList("t" + (i % 7), cjk ? "标签" : "tag"));
+			beans.add(bean);
+		}
+		return beans;
+	}
+
+	/**
+	 * @param count number of maps
+	 * @return the content of {@link #list(int, boolean)} as maps
+	 */
+	static List<Map<String, Object>> maps(int count) {
+		List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(count);
+		for (TestBean bean : list(count, false)) {
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("id", bean.getId());
+			map.put("name", bean.getName());
+			map.put("description", bean.getDescription());
+			map.put("price", bean.getPrice());
+			map.put("created", bean.getCreated());
+			map.put("remark", bean.getRemark());
+			map.put("tags", bean.getTags());
+			maps.add(map);
+		}
+		return maps;
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.struts2.fastjson.annotation.ExcludeFilter;
+
+/**
+ * Root of the result tests, a page of {@link TestBean} rows whose class
+ * declares an exclusion pattern of its own.
+ */
+@ExcludeFilter(patterns = "internal\\w*")
+public class TestPage {
+
+	private String title;
+	private long total;
+	private Date generated;
+	private String secret;
+	private String internalCode;
+	private String note;
+	private List<TestBean> rows;
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	public Date getGenerated() {
+		return generated;
+	}
+
+	public void setGenerated(Date generated) {
+		this.generated = generated;
+	}
+
+	public String getSecret() {
+		return secret;
+	}
+
+	public void setSecret(String secret) {
+		this.secret = secret;
+	}
+
+	public String getInternalCode() {
+		return internalCode;
+	}
+
+	public void setInternalCode(String internalCode) {
+		this.internalCode = internalCode;
+	}
+
+	public String getNote() {
+		return note;
+	}
+
+	public void setNote(String note) {
+		this.note = note;
+	}
+
+	public List<TestBean> getRows() {
+		return rows;
+	}
+
+	public void setRows(List<TestBean> rows) {
+		this.rows = rows;
+	}
+
+	/**
+	 * @param rows number of rows
+	 * @param cjk whether the texts are Chinese
+	 * @return a page with fixed content and no note
+	 */
+	static TestPage of(int rows, boolean cjk) {
+		TestPage page = new TestPage();
+		page.setTitle(cjk ? "商品列表" : "products");
+		page.setTotal(rows);
+		page.setGenerated(new Date(1500000000000L));
+		page.setSecret("s3cr3t");
+		page.setInternalCode("X-1");
+		page.setRows(TestBean.list(rows, cjk));
+		return page;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.loadtest;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.struts2.fastjson.TestBean;
+
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Action of the load test, its <code>items</code> are a list of
+ * {@link TestBean} of the requested <code>size</code>. The lists are built
+ * once per size, so a request measures the result and the container only.
+ */
+public class PayloadAction extends ActionSupport {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Largest list served, keeps a mistyped size from exhausting the heap */
+	static final int MAX_SIZE = 100000;
+
+	private static final ConcurrentMap<Integer, List<TestBean>> ITEMS = new ConcurrentHashMap<Integer, List<TestBean>>();
+
+	private int size = 10;
+	private List<TestBean> items;
+
+	@Override
+	public String execute() {
+		int count = Math.max(0, Math.min(size, MAX_SIZE));
+		items = ITEMS.get(count);
+		if (items == null) {
+			List<TestBean> created = TestBean.list(count, false);
+			items = ITEMS.putIfAbsent(count, created);
+			if (items == null) {
+				items = created;
+			}
+		}
+		return SUCCESS;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public List<TestBean> getItems() {
+		return items;
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.DispatcherType;
+
+import org.apache.struts2.dispatcher.filter.StrutsPrepareAndExecuteFilter;
+import org.apache.struts2.fastjson.FastJSONResult;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+
+/**
+ * End-to-end throughput of {@link FastJSONResult} in a servlet container. Boots
+ * an embedded Jetty running the <code>bench</code> package of
+ * <code>struts-loadtest.xml</code>, which extends <code>fastjson-default</code>,
+ * and drives it over local HTTP connections. For every payload size and output
+ * mode it reports requests per second, p50/p99 latency and the response body
+ * bytes per second, as sent on the wire (compressed for gzip).
+ * <p>
+ * Not a unit test: run it with <code>mvn -Ploadtest verify -DskipTests</code>,
+ * configured by the system properties
+ * <ul>
+ * <li><code>loadtest.concurrency</code>: concurrent connections, default 64</li>
+ * <li><code>loadtest.sizes</code>: list sizes, comma separated, default 10,1000,10000</li>
+ * <li><code>loadtest.modes</code>: any of plain,gzip,jsonp,wrapped, default all</li>
+ * <li><code>loadtest.warmup</code>: seconds of warm-up per run, default 10</li>
+ * <li><code>loadtest.duration</code>: seconds measured per run, default 30</li>
+ * <li><code>loadtest.port</code>: port of the container, default any free port</li>
+ * <li><code>loadtest.metrics</code>: enables the JMX result metrics, default false</li>
+ * </ul>
+ */
+public class ThroughputHarness {
+
+	private static final String CONFIG = "struts-default.xml,struts-plugin.xml,struts-loadtest.xml";
+
+	public static void main(String[] args) throws Exception {
+		int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+		String[] sizes = System.getProperty("loadtest.sizes", "10,1000,10000").split("\\s*,\\s*");
+		String[] modes = System.getProperty("loadtest.modes", "plain,gzip,jsonp,wrapped").split("\\s*,\\s*");
+		int warmup = Integer.getInteger("loadtest.warmup", 10);
+		int duration = Integer.getInteger("loadtest.duration", 30);
+		int port = Integer.getInteger("loadtest.port", 0);
+		boolean metrics = Boolean.getBoolean("loadtest.metrics");
+
+		// HttpURLConnection keeps only 5 idle connections per host by default
+		System.setProperty("http.maxConnections", String.valueOf(concurrency));
+		Server server = new Server(new InetSocketAddress("127.0.0.1", port));
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		try {
+			start(server, metrics);
+			String base = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/bench/";
+			System.out.println(String.format("concurrency %d, warm-up %ds, duration %ds, %s", concurrency, warmup,
+					duration, base));
+			System.out.println(String.format("%-8s %8s %10s %9s %9s %10s %7s", "mode", "size", "req/s", "p50 ms",
+					"p99 ms", "MB/s", "errors"));
+			for (String size : sizes) {
+				for (String mode : modes) {
+					URL url = new URL(base + mode + "?size=" + size + ("jsonp".equals(mode) ? "&callback=cb" : ""));
+					boolean gzip = "gzip".equals(mode);
+					check(url, mode, gzip);
+					run(clients, concurrency, url, gzip, warmup);
+					Report report = run(clients, concurrency, url, gzip, duration);
+					System.out.println(String.format("%-8s %8s %10.1f %9.2f %9.2f %10.2f %7d", mode, size,
+							report.perSecond(report.count), report.percentile(0.5d), report.percentile(0.99d),
+							report.perSecond(report.bytes) / (1024 * 1024), report.errors));
+				}
+			}
+		} finally {
+			clients.shutdownNow();
+			server.stop();
+		}
+	}
+
+	/**
+	 * Deploys the Struts filter with the load test configuration and starts
+	 * the container.
+	 *
+	 * @param server the container, stopped by the caller also if starting fails
+	 * @param metrics whether the JMX result metrics are enabled
+	 */
+	static void start(Server server, boolean metrics) throws Exception {
+		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+		context.setContextPath("/");
+		FilterHolder struts = new FilterHolder(StrutsPrepareAndExecuteFilter.class);
+		struts.setInitParameter("config", CONFIG);
+		struts.setInitParameter("struts.fastjson.metrics.enabled", String.valueOf(metrics));
+		context.addFilter(struts, "/*", EnumSet.of(DispatcherType.REQUEST));
+		server.setHandler(context);
+		server.start();
+	}
+
+	/**
+	 * Requests the url once and checks the response has the shape of its mode,
+	 * so a misconfigured action is not measured.
+	 */
+	static void check(URL url, String mode, boolean gzip) throws IOException {
+		HttpURLConnection connection = open(url, gzip);
+		int status = connection.getResponseCode();
+		if (status != HttpURLConnection.HTTP_OK) {
+			throw new IllegalStateException(url + " answered " + status);
+		}
+		if (gzip && !"gzip".equals(connection.getHeaderField("Content-Encoding"))) {
+			throw new IllegalStateException(url + " is not compressed");
+		}
+		InputStream in = gzip ? new GZIPInputStream(connection.getInputStream()) : connection.getInputStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[8192];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				body.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		String text = body.toString("UTF-8");
+		String start = "jsonp".equals(mode) ? "cb([" : "wrapped".equals(mode) ? "{\"data\":[" : "[";
+		if (!text.startsWith(start)) {
+			throw new IllegalStateException(url + " does not start with " + start + ": "
+					+ text.substring(0, Math.min(text.length(), 200)));
+		}
+	}
+
+	/**
+	 * Sends requests from <code>concurrency</code> connections until
+	 * <code>seconds</code> have passed.
+	 */
+	static Report run(ExecutorService clients, int concurrency, final URL url, final boolean gzip, int seconds)
+			throws Exception {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		List<Future<Report>> futures = new ArrayList<Future<Report>>(concurrency);
+		long start = System.nanoTime();
+		for (int i = 0; i < concurrency; i++) {
+			futures.add(clients.submit(new Callable<Report>() {
+				@Override
+				public Report call() {
+					Report report = new Report();
+					byte[] buffer = new byte[16 * 1024];
+					while (System.nanoTime() < deadline) {
+						long begin = System.nanoTime();
+						long bytes = request(url, gzip, buffer);
+						report.add(System.nanoTime() - begin, bytes);
+					}
+					return report;
+				}
+			}));
+		}
+		Report total = new Report();
+		for (Future<Report> future : futures) {
+			total.addAll(future.get());
+		}
+		total.elapsed = System.nanoTime() - start;
+		return total;
+	}
+
+	/**
+	 * @return bytes of the response body as received, -1 if the request failed
+	 */
+	static long request(URL url, boolean gzip, byte[] buffer) {
+		try {
+			HttpURLConnection connection = open(url, gzip);
+			int status = connection.getResponseCode();
+			InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream()
+					: connection.getErrorStream();
+			long bytes = 0;
+			if (in != null) {
+				// read to the end, so the connection is kept alive for the next request
+				try {
+					for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+						bytes += read;
+					}
+				} finally {
+					in.close();
+				}
+			}
+			return status == HttpURLConnection.HTTP_OK ? bytes : -1;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private static HttpURLConnection open(URL url, boolean gzip) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(10000);
+		connection.setReadTimeout(60000);
+		if (gzip) {
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+		}
+		return connection;
+	}
+
+	/**
+	 * Latencies and bytes of the requests of one run, first per connection,
+	 * then merged.
+	 */
+	static final class Report {
+
+		long[] latencies = new long[1024];
+		int count;
+		long bytes;
+		int errors;
+		long elapsed;
+
+		void add(long latency, long received) {
+			if (received < 0) {
+				errors++;
+				return;
+			}
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latency;
+			bytes += received;
+		}
+
+		void addAll(Report other) {
+			if (count + other.count > latencies.length) {
+				latencies = Arrays.copyOf(latencies, count + other.count);
+			}
+			System.arraycopy(other.latencies, 0, latencies, count, other.count);
+			count += other.count;
+			bytes += other.bytes;
+			errors += other.errors;
+		}
+
+		double perSecond(long value) {
+			return value * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+		}
+
+		/**
+		 * @return latency in milliseconds below which the given fraction of
+		 *         the successful requests completed
+		 */
+		double percentile(double fraction) {
+			if (count == 0) {
+				return 0;
+			}
+			long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			int index = Math.max(0, (int) Math.ceil(fraction * count) - 1);
+			return sorted[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.struts2.fastjson.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * Property names of the root object as limited by <code>ignoreHierarchy</code>
+ * must be the ones fastjson serializes.
+ */
+public class JSONSerializerUtilsTest {
+
+	public interface Named {
+
+		String getTitle();
+
+	}
+
+	public static class FieldRenamed {
+
+		@JSONField(name = "user_name")
+		private String userName = "bob";
+		private int age = 3;
+
+		public String getUserName() {
+			return userName;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+	}
+
+	public static class GetterRenamed {
+
+		private String userName = "bob";
+
+		@JSONField(name = "login")
+		public String getUserName() {
+			return userName;
+		}
+
+	}
+
+	public static class Derived extends FieldRenamed implements Named {
+
+		@JSONField(name = "nick_name")
+		private String nickName = "b";
+		private String title = "t";
+
+		public String getNickName() {
+			return nickName;
+		}
+
+		@Override
+		public String getTitle() {
+			return title;
+		}
+
+	}
+
+	public static class TitleBase {
+
+		private String title = "t";
+
+		public String getTitle() {
+			return title;
+		}
+
+	}
+
+	public static class InterfaceOnly extends TitleBase implements Named {
+
+		private int count = 1;
+
+		public int getCount() {
+			return count;
+		}
+
+	}
+
+	@Test
+	public void fieldRenamesAreDeclaredProperties() {
+		assertEquals("{\"age\":\"3\",\"user_name\":\"bob\"}", serialize(new FieldRenamed(), true, true));
+		assertEquals(serialize(new FieldRenamed(), false, true), serialize(new FieldRenamed(), true, true));
+	}
+
+	@Test
+	public void inheritedRenamesAreLeftOut() {
+		assertEquals("{\"nick_name\":\"b\",\"title\":\"t\"}", serialize(new Derived(), true, true));
+		assertEquals("{\"age\":\"3\",\"nick_name\":\"b\",\"title\":\"t\",\"user_name\":\"bob\"}",
+				serialize(new Derived(), false, true));
+	}
+
+	@Test
+	public void interfacePropertiesOnlyWhenRequested() {
+		assertEquals("{\"count\":\"1\"}", serialize(new InterfaceOnly(), true, true));
+		assertEquals("{\"count\":\"1\",\"title\":\"t\"}", serialize(new InterfaceOnly(), true, false));
+	}
+
+	@Test
+	public void propertyNamesFollowFastjson() throws Exception {
+		assertEquals("user_name", JSONSerializerUtils.getPropertyName(FieldRenamed.class.getMethod("getUserName")));
+		assertEquals("login", JSONSerializerUtils.getPropertyName(GetterRenamed.class.getMethod("getUserName")));
+		assertEquals(null, JSONSerializerUtils.getPropertyName(Object.class.getMethod("hashCode")));
+	}
+
+	private static String serialize(Object object, boolean ignoreHierarchy, boolean ignoreInterfaces) {
+		return JSONSerializerUtils.serialize(object, JSONSerializerUtils.buildFilters(object,
+				Collections.<Pattern>emptyList(), Collections.<Pattern>emptyList(),
+				ignoreHierarchy, ignoreInterfaces, false), null);
+	}
+
+}